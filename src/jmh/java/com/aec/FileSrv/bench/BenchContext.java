@@ -0,0 +1,107 @@
+package com.aec.FileSrv.bench;
+
+import com.aec.FileSrv.FileServiceApplication;
+import com.google.api.client.http.HttpTransport;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Arranca la aplicación completa contra un Postgres embebido (binarios locales, sin Docker ni
+ * Testcontainers) y un {@link FakeDrive}: en proceso para los benchmarks JMH, o detrás de un
+ * {@link FakeDriveServer} para la prueba de carga.
+ */
+public final class BenchContext implements AutoCloseable {
+
+    public static final String DRIVE_ROOT_URL = "https://www.googleapis.com/";
+
+    private final EmbeddedPostgres postgres;
+    private final ConfigurableApplicationContext context;
+    private final FakeDrive drive;
+    private final Path workDir;
+
+    /** Drive falso en proceso y sin cachés de contenido ni ZIPs: se mide el camino hasta Drive */
+    public BenchContext(Duration driveLatency, long driveBytesPerSecond) throws IOException {
+        this(new FakeDrive(DRIVE_ROOT_URL, driveLatency, driveBytesPerSecond), null,
+                Map.of("file-service.content-cache-enabled", false, "file-service.zip-artifact-mode", "off"));
+    }
+
+    /** Drive falso por HTTP y la configuración por defecto del servicio, como en un pod */
+    public BenchContext(FakeDriveServer server) throws IOException {
+        this(server.drive(), server.rootUrl(), Map.of());
+    }
+
+    private BenchContext(FakeDrive drive, String driveRootUrl, Map<String, Object> overrides) throws IOException {
+        this.workDir = Files.createTempDirectory("file-service-bench-");
+        this.postgres = EmbeddedPostgres.builder().start();
+        this.drive = drive;
+
+        Map<String, Object> props = new LinkedHashMap<>();
+        props.put("PGHOST", "localhost");
+        props.put("PGPORT", postgres.getPort());
+        props.put("PGDATABASE", "postgres");
+        props.put("PGUSER", "postgres");
+        props.put("PGPASSWORD", "postgres");
+        props.put("JWT_SECRET", Base64.getEncoder().encodeToString(new byte[32]));
+        props.put("GOOGLE_CLIENT_ID", "bench");
+        props.put("GOOGLE_CLIENT_SECRET", "bench");
+        props.put("GOOGLE_REDIRECT_URI", "http://localhost/oauth2/callback");
+        props.put("GDRIVE_FOLDER_PRODUCT_ID", "bench-products");
+        props.put("GDRIVE_FOLDER_RECEIPT_ID", "bench-receipts");
+        props.put("server.port", 0);
+        props.put("spring.jpa.show-sql", false);
+        props.put("spring.docker.compose.enabled", false);
+        props.put("spring.devtools.restart.enabled", false);
+        props.put("logging.level.root", "WARN");
+        props.put("logging.level.com.aec.FileSrv", "WARN");
+        props.put("file-service.content-cache-dir", workDir.resolve("cache").toString());
+        props.put("file-service.zip-artifact-dir", workDir.resolve("zips").toString());
+        props.put("file-service.upload-job-dir", workDir.resolve("jobs").toString());
+        props.put("gdrive.upload-session-dir", workDir.resolve("sessions").toString());
+        props.putAll(overrides);
+
+        SpringApplicationBuilder app = new SpringApplicationBuilder(FileServiceApplication.class);
+        if (driveRootUrl != null) {
+            props.put("gdrive.root-url", driveRootUrl);
+        } else {
+            HttpTransport transport = new FakeDriveTransport(drive);
+            // Se registra a mano (sin @Configuration) para que el escaneo de componentes no lo recoja
+            app.initializers(ctx -> ctx.getBeanFactory().registerSingleton("fakeDriveTransport", transport));
+        }
+        this.context = app.properties(props).run();
+
+        // Token vigente durante toda la ejecución: GoogleOAuthService nunca intenta refrescarlo
+        bean(JdbcTemplate.class).update("INSERT INTO oauth_tokens (provider_key, access_token, refresh_token, expires_at) "
+                + "VALUES ('google-drive', 'bench', 'bench', now() + interval '100 years')");
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public FakeDrive drive() {
+        return drive;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            context.close();
+        } finally {
+            postgres.close();
+        }
+    }
+}
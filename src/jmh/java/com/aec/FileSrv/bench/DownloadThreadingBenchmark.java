@@ -0,0 +1,133 @@
+package com.aec.FileSrv.bench;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.drive.Drive;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Descargas concurrentes bloqueantes contra un Drive falso local (sólo {@code alt=media}, con
+ * latencia fija por petición), desde un pool fijo de hilos de plataforma (como Tomcat) o con un hilo virtual por
+ * descarga. Cada invocación lanza {@value #DOWNLOADS} descargas y espera a todas; el resultado se
+ * da por descarga.
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="DownloadThreadingBenchmark -p latencyMs=50"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class DownloadThreadingBenchmark {
+
+    private static final int DOWNLOADS = 1000;
+    private static final String FILE_ID = "plano.rvt";
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    /** Tamaño del pool de plataforma */
+    @Param({"200"})
+    public int platformThreads;
+
+    @Param({"50"})
+    public long latencyMs;
+
+    @Param({"65536"})
+    public int fileSize;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private byte[] content;
+    private Drive drive;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        content = new byte[fileSize];
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // El servidor atiende cada petición en un hilo virtual: la latencia no debe limitarla él
+        serverExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(serverExecutor);
+        server.createContext("/drive/v3/files/", this::serve);
+        server.start();
+        // Sin límite de conexiones keep-alive del lado del cliente para que el cuello sea el modelo de hilos
+        System.setProperty("http.maxConnections", String.valueOf(Math.max(platformThreads, DOWNLOADS)));
+        drive = new Drive.Builder(new NetHttpTransport(), GsonFactory.getDefaultInstance(), null)
+                .setRootUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/")
+                .setApplicationName("bench")
+                .build();
+        executor = "virtual".equals(threads)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(platformThreads);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        executor.shutdownNow();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try {
+            exchange.getRequestBody().readAllBytes();
+            Thread.sleep(latencyMs);
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOWNLOADS)
+    public long download() throws Exception {
+        List<Future<Long>> futures = new ArrayList<>(DOWNLOADS);
+        for (int i = 0; i < DOWNLOADS; i++) {
+            futures.add(executor.submit(() -> {
+                try (InputStream in = drive.files().get(FILE_ID).executeMediaAsInputStream()) {
+                    return in.transferTo(OutputStream.nullOutputStream());
+                }
+            }));
+        }
+        long bytes = 0;
+        for (Future<Long> f : futures) {
+            bytes += f.get();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,479 @@
+package com.aec.FileSrv.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Drive v3 en memoria con lo que usa el servicio: files.list (filtros por carpeta, nombre y tipo),
+ * files.create/get/update/delete/copy, descargas {@code alt=media} con Range y subidas
+ * {@code multipart}, {@code media} y reanudables. Determinista: IDs secuenciales, latencia fija por
+ * petición y ancho de banda fijo (0 = ilimitado) aplicado a los bytes de contenido en ambos sentidos.
+ * Con {@link #injectFaults} responde además 429 y 503 en una fracción de las peticiones, con una
+ * semilla fija para que dos ejecuciones vean los mismos fallos.
+ */
+public class FakeDrive {
+
+    public static final String FOLDER_MIME = "application/vnd.google-apps.folder";
+
+    public record Response(int status, Map<String, String> headers, byte[] body) { }
+
+    private record Item(String id, String name, String mimeType, String parent, byte[] content) { }
+
+    /** Subida reanudable en curso: destino y bytes recibidos hasta ahora */
+    private static final class Upload {
+        final String existingId;
+        final String name;
+        final String mimeType;
+        final String parent;
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        Upload(String existingId, String name, String mimeType, String parent) {
+            this.existingId = existingId;
+            this.name = name;
+            this.mimeType = mimeType;
+            this.parent = parent;
+        }
+    }
+
+    private static final Pattern PARENT = Pattern.compile("'([^']+)' in parents");
+    private static final Pattern NAME = Pattern.compile("name\\s*=\\s*'((?:[^'\\\\]|\\\\.)*)'");
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+    private static final Pattern BOUNDARY = Pattern.compile("boundary=\"?([^\";]+)\"?");
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final Map<String, Item> items = new ConcurrentHashMap<>();
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong faults = new AtomicLong();
+    private final String rootUrl;
+    private final long latencyNanos;
+    private final long bytesPerSecond;
+    private volatile double rate429;
+    private volatile double rate5xx;
+    private Random faultRandom = new Random(0);
+
+    public FakeDrive(String rootUrl, Duration latency, long bytesPerSecond) {
+        this.rootUrl = rootUrl.endsWith("/") ? rootUrl : rootUrl + "/";
+        this.latencyNanos = latency.toNanos();
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    public long faultCount() {
+        return faults.get();
+    }
+
+    /** Fracción de peticiones (0..1) que responderán 429 rateLimitExceeded y 503 backendError */
+    public void injectFaults(double rate429, double rate5xx, long seed) {
+        synchronized (this) {
+            this.faultRandom = new Random(seed);
+        }
+        this.rate429 = rate429;
+        this.rate5xx = rate5xx;
+    }
+
+    /** Atiende una petición; {@code header} busca cabeceras sin distinguir mayúsculas. */
+    public Response handle(String method, String url, Function<String, String> header, byte[] body)
+            throws IOException {
+        requests.incrementAndGet();
+        pause(latencyNanos);
+        Response fault = fault();
+        if (fault != null) {
+            return fault;
+        }
+        if ("gzip".equalsIgnoreCase(header.apply("Content-Encoding"))) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = in.readAllBytes();
+            }
+        }
+        String override = header.apply("X-HTTP-Method-Override");
+        if (override != null) {
+            method = override;
+        }
+
+        URI uri = URI.create(url);
+        String path = uri.getRawPath().replaceFirst("^/", "");
+        Map<String, String> query = query(uri.getRawQuery());
+
+        if (path.startsWith("upload/session/")) {
+            return uploadChunk(path.substring("upload/session/".length()), header.apply("Content-Range"), body);
+        }
+        if (path.startsWith("upload/drive/v3/files")) {
+            String id = path.length() > "upload/drive/v3/files".length()
+                    ? path.substring("upload/drive/v3/files/".length()) : null;
+            return switch (query.getOrDefault("uploadType", "resumable")) {
+                case "multipart" -> uploadMultipart(id, header.apply("Content-Type"), body);
+                case "media" -> store(id, null, header.apply("Content-Type"), null, body);
+                default -> startUpload(id, header.apply("X-Upload-Content-Type"), body);
+            };
+        }
+        if (!path.startsWith("drive/v3/files")) {
+            return error(404, "Ruta desconocida: " + path);
+        }
+
+        String rest = path.substring("drive/v3/files".length()).replaceFirst("^/", "");
+        if (rest.isEmpty()) {
+            return switch (method) {
+                case "GET" -> list(query.get("q"));
+                case "POST" -> create(body);
+                default -> error(405, method);
+            };
+        }
+        if (rest.endsWith("/copy")) {
+            return copy(rest.substring(0, rest.length() - "/copy".length()), body);
+        }
+        Item item = items.get(rest);
+        if (item == null) {
+            return error(404, "File not found: " + rest);
+        }
+        return switch (method) {
+            case "GET" -> "media".equals(query.get("alt")) ? download(item, header.apply("Range")) : ok(meta(item));
+            case "DELETE" -> {
+                items.remove(rest);
+                yield new Response(204, Map.of(), new byte[0]);
+            }
+            case "PATCH" -> update(item, query, body);
+            default -> error(405, method);
+        };
+    }
+
+    private Response fault() throws IOException {
+        double r429 = rate429;
+        double r5xx = rate5xx;
+        if (r429 <= 0 && r5xx <= 0) {
+            return null;
+        }
+        double roll;
+        synchronized (this) {
+            roll = faultRandom.nextDouble();
+        }
+        if (roll < r429) {
+            faults.incrementAndGet();
+            return error(429, "rateLimitExceeded", "Rate Limit Exceeded");
+        }
+        if (roll < r429 + r5xx) {
+            faults.incrementAndGet();
+            return error(503, "backendError", "Backend Error");
+        }
+        return null;
+    }
+
+    /** files.update sin contenido: nombre y {@code addParents}/{@code removeParents} */
+    private Response update(Item item, Map<String, String> query, byte[] body) throws IOException {
+        JsonNode meta = body.length > 0 ? json.readTree(body) : json.createObjectNode();
+        String name = text(meta, "name");
+        String parent = item.parent();
+        if (query.containsKey("addParents")) {
+            parent = query.get("addParents").split(",")[0];
+        } else if (parent != null && parent.equals(query.get("removeParents"))) {
+            parent = null;
+        }
+        Item updated = new Item(item.id(), name != null ? name : item.name(), item.mimeType(), parent, item.content());
+        items.put(updated.id(), updated);
+        return ok(meta(updated));
+    }
+
+    private Response list(String q) throws IOException {
+        String parent = q != null ? group(PARENT, q) : null;
+        String name = q != null ? group(NAME, q) : null;
+        if (name != null) {
+            name = name.replace("\\'", "'");
+        }
+        boolean onlyFolders = q != null && q.matches("(?s).*mimeType\\s*=\\s*'" + FOLDER_MIME + "'.*");
+        boolean noFolders = q != null && q.matches("(?s).*mimeType\\s*!=\\s*'" + FOLDER_MIME + "'.*");
+
+        ObjectNode out = json.createObjectNode();
+        ArrayNode files = out.putArray("files");
+        String n = name;
+        items.values().stream()
+                .filter(i -> parent == null || parent.equals(i.parent()))
+                .filter(i -> n == null || n.equals(i.name()))
+                .filter(i -> !onlyFolders || FOLDER_MIME.equals(i.mimeType()))
+                .filter(i -> !noFolders || !FOLDER_MIME.equals(i.mimeType()))
+                .sorted((a, b) -> Long.compare(seq(a.id()), seq(b.id())))
+                .forEach(i -> files.add(meta(i)));
+        return ok(out);
+    }
+
+    private Response create(byte[] body) throws IOException {
+        JsonNode meta = json.readTree(body);
+        Item item = new Item(nextId(), text(meta, "name"), text(meta, "mimeType"), firstParent(meta), new byte[0]);
+        items.put(item.id(), item);
+        return ok(meta(item));
+    }
+
+    private Response copy(String sourceId, byte[] body) throws IOException {
+        Item source = items.get(sourceId);
+        if (source == null) {
+            return error(404, "File not found: " + sourceId);
+        }
+        JsonNode meta = body.length > 0 ? json.readTree(body) : json.createObjectNode();
+        String name = text(meta, "name");
+        String parent = firstParent(meta);
+        Item copy = new Item(nextId(), name != null ? name : source.name(), source.mimeType(),
+                parent != null ? parent : source.parent(), source.content());
+        items.put(copy.id(), copy);
+        return ok(meta(copy));
+    }
+
+    private Response download(Item item, String range) throws IOException {
+        byte[] content = item.content();
+        int status = 200;
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", item.mimeType() != null ? item.mimeType() : "application/octet-stream");
+        if (range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring("bytes=".length()).split("-", 2);
+            int start = Integer.parseInt(bounds[0]);
+            int end = bounds[1].isEmpty() ? content.length - 1 : Math.min(Integer.parseInt(bounds[1]), content.length - 1);
+            headers.put("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+            content = Arrays.copyOfRange(content, start, end + 1);
+            status = 206;
+        }
+        transfer(content.length);
+        return new Response(status, headers, content);
+    }
+
+    /** multipart/related: primera parte metadatos JSON, segunda el contenido */
+    private Response uploadMultipart(String existingId, String contentType, byte[] body) throws IOException {
+        String boundary = contentType != null ? group(BOUNDARY, contentType) : null;
+        if (boundary == null) {
+            return error(400, "Multipart sin boundary");
+        }
+        List<byte[]> parts = parts(body, ("--" + boundary).getBytes(StandardCharsets.ISO_8859_1));
+        if (parts.size() != 2) {
+            return error(400, "Se esperaban 2 partes y llegaron " + parts.size());
+        }
+        JsonNode meta = parts.get(0).length > 0 ? json.readTree(partBody(parts.get(0))) : json.createObjectNode();
+        String mimeType = partHeader(parts.get(1), "Content-Type");
+        return store(existingId, text(meta, "name"), text(meta, "mimeType") != null ? text(meta, "mimeType") : mimeType,
+                firstParent(meta), partBody(parts.get(1)));
+    }
+
+    /** Crea o reemplaza el contenido de una vez (subidas multipart y media) */
+    private Response store(String existingId, String name, String mimeType, String parent, byte[] content)
+            throws IOException {
+        transfer(content.length);
+        Item item;
+        if (existingId != null) {
+            Item old = items.get(existingId);
+            if (old == null) {
+                return error(404, "File not found: " + existingId);
+            }
+            item = new Item(old.id(), name != null ? name : old.name(),
+                    mimeType != null ? mimeType : old.mimeType(), old.parent(), content);
+        } else {
+            item = new Item(nextId(), name, mimeType, parent, content);
+        }
+        items.put(item.id(), item);
+        return ok(meta(item));
+    }
+
+    private Response startUpload(String existingId, String mimeType, byte[] body) throws IOException {
+        JsonNode meta = body.length > 0 ? json.readTree(body) : json.createObjectNode();
+        if (existingId != null && !items.containsKey(existingId)) {
+            return error(404, "File not found: " + existingId);
+        }
+        String session = String.valueOf(ids.incrementAndGet());
+        uploads.put(session, new Upload(existingId, text(meta, "name"),
+                mimeType != null ? mimeType : text(meta, "mimeType"), firstParent(meta)));
+        return new Response(200, Map.of("Location", rootUrl + "upload/session/" + session), new byte[0]);
+    }
+
+    private Response uploadChunk(String session, String contentRange, byte[] body) throws IOException {
+        Upload upload = uploads.get(session);
+        if (upload == null) {
+            return error(404, "Upload session not found");
+        }
+        transfer(body.length);
+        long total;
+        synchronized (upload) {
+            Matcher m = contentRange != null ? CONTENT_RANGE.matcher(contentRange) : null;
+            if (m != null && m.matches()) {
+                int start = Integer.parseInt(m.group(1));
+                if (start == upload.received.size()) {
+                    upload.received.write(body);
+                }
+                total = "*".equals(m.group(3)) ? -1 : Long.parseLong(m.group(3));
+            } else {
+                // "bytes */total": consulta de estado
+                total = contentRange != null && contentRange.startsWith("bytes */")
+                        ? Long.parseLong(contentRange.substring("bytes */".length())) : -1;
+            }
+            if (total < 0 || upload.received.size() < total) {
+                int received = upload.received.size();
+                return new Response(308, received > 0 ? Map.of("Range", "bytes=0-" + (received - 1)) : Map.of(),
+                        new byte[0]);
+            }
+        }
+        uploads.remove(session);
+        Item item;
+        if (upload.existingId != null) {
+            Item old = items.get(upload.existingId);
+            item = new Item(old.id(), upload.name != null ? upload.name : old.name(),
+                    upload.mimeType != null ? upload.mimeType : old.mimeType(), old.parent(),
+                    upload.received.toByteArray());
+        } else {
+            item = new Item(nextId(), upload.name, upload.mimeType, upload.parent, upload.received.toByteArray());
+        }
+        items.put(item.id(), item);
+        return ok(meta(item));
+    }
+
+    private ObjectNode meta(Item i) {
+        ObjectNode n = json.createObjectNode();
+        n.put("id", i.id());
+        n.put("name", i.name());
+        n.put("mimeType", i.mimeType());
+        if (!FOLDER_MIME.equals(i.mimeType())) {
+            n.put("size", String.valueOf(i.content().length));
+        }
+        if (i.parent() != null) {
+            n.putArray("parents").add(i.parent());
+        }
+        return n;
+    }
+
+    private Response ok(JsonNode body) throws IOException {
+        return new Response(200, Map.of("Content-Type", "application/json; charset=UTF-8"), json.writeValueAsBytes(body));
+    }
+
+    private Response error(int status, String message) throws IOException {
+        return error(status, status == 404 ? "notFound" : "badRequest", message);
+    }
+
+    private Response error(int status, String reason, String message) throws IOException {
+        ObjectNode err = json.createObjectNode();
+        ObjectNode e = err.putObject("error");
+        e.put("code", status);
+        e.put("message", message);
+        e.putArray("errors").addObject().put("reason", reason).put("message", message);
+        return new Response(status, Map.of("Content-Type", "application/json; charset=UTF-8"), json.writeValueAsBytes(err));
+    }
+
+    private String nextId() {
+        return "fake-" + ids.incrementAndGet();
+    }
+
+    private static long seq(String id) {
+        return Long.parseLong(id.substring(id.lastIndexOf('-') + 1));
+    }
+
+    private void transfer(long bytes) throws InterruptedIOException {
+        if (bytesPerSecond > 0 && bytes > 0) {
+            pause(bytes * 1_000_000_000L / bytesPerSecond);
+        }
+    }
+
+    private static void pause(long nanos) throws InterruptedIOException {
+        if (nanos <= 0) return;
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido en el Drive falso");
+        }
+    }
+
+    /** Partes entre delimitadores, con sus cabeceras; descarta el preámbulo y el cierre "--" */
+    private static List<byte[]> parts(byte[] body, byte[] delimiter) {
+        List<byte[]> parts = new ArrayList<>();
+        int start = indexOf(body, delimiter, 0);
+        while (start >= 0) {
+            int from = start + delimiter.length;
+            if (from + 1 < body.length && body[from] == '-' && body[from + 1] == '-') {
+                break;
+            }
+            int next = indexOf(body, delimiter, from);
+            if (next < 0) {
+                break;
+            }
+            // Sin el CRLF que sigue al delimitador ni el que precede al siguiente
+            int end = next >= 2 && body[next - 2] == '\r' ? next - 2 : next - 1;
+            parts.add(Arrays.copyOfRange(body, Math.min(from + 2, end), end));
+            start = next;
+        }
+        return parts;
+    }
+
+    private static byte[] partBody(byte[] part) {
+        int sep = indexOf(part, "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1), 0);
+        return sep < 0 ? part : Arrays.copyOfRange(part, sep + 4, part.length);
+    }
+
+    private static String partHeader(byte[] part, String name) {
+        int sep = indexOf(part, "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1), 0);
+        String headers = new String(part, 0, sep < 0 ? 0 : sep, StandardCharsets.ISO_8859_1);
+        for (String line : headers.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase(name)) {
+                return line.substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static String group(Pattern p, String s) {
+        Matcher m = p.matcher(s);
+        return m.find() ? m.group(1) : null;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode v = node.get(field);
+        return v != null && !v.isNull() ? v.asText() : null;
+    }
+
+    private static String firstParent(JsonNode meta) {
+        JsonNode parents = meta.get("parents");
+        return parents != null && parents.isArray() && !parents.isEmpty() ? parents.get(0).asText() : null;
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> out = new LinkedHashMap<>();
+        if (raw == null) return out;
+        for (String pair : List.of(raw.split("&"))) {
+            int eq = pair.indexOf('=');
+            String k = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String v = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            out.put(k, v);
+        }
+        return out;
+    }
+}
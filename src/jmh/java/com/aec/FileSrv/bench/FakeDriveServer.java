@@ -0,0 +1,144 @@
+package com.aec.FileSrv.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link FakeDrive} detrás de un servidor HTTP local de verdad: el servicio lo usa apuntando
+ * {@code GDRIVE_ROOT_URL} a {@link #rootUrl()}, así que las peticiones pasan por el transporte de
+ * red real (sockets, gzip, pool de conexiones) como en producción. Arrancado por separado sirve
+ * para una prueba de carga contra el servicio desplegado en otro proceso:
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec@fake-drive -Dfakedrive.args="port=8090 latencyMs=40 rate429=0.02 rate5xx=0.005"
+ * </pre>
+ */
+public class FakeDriveServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final FakeDrive drive;
+    private final String rootUrl;
+    /** Extremo remoto de cada conexión vista: una entrada por conexión TCP abierta por el cliente */
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+    /** En loopback y puerto libre, para la prueba de carga en un solo proceso */
+    public FakeDriveServer(Duration latency, long bytesPerSecond) throws IOException {
+        this("127.0.0.1", 0, latency, bytesPerSecond);
+    }
+
+    /** {@code host} es a la vez dirección de escucha y la que se anuncia en las URLs de subida */
+    public FakeDriveServer(String host, int port, Duration latency, long bytesPerSecond) throws IOException {
+        this(host, port, latency, bytesPerSecond, null);
+    }
+
+    /** Con {@code tls} distinto de null sirve HTTPS con ese contexto */
+    public FakeDriveServer(String host, int port, Duration latency, long bytesPerSecond, SSLContext tls)
+            throws IOException {
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getByName(host), port);
+        if (tls != null) {
+            HttpsServer https = HttpsServer.create(address, 0);
+            https.setHttpsConfigurator(new HttpsConfigurator(tls));
+            this.server = https;
+        } else {
+            this.server = HttpServer.create(address, 0);
+        }
+        this.rootUrl = (tls != null ? "https://" : "http://") + host + ":" + server.getAddress().getPort() + "/";
+        this.drive = new FakeDrive(rootUrl, latency, bytesPerSecond);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String rootUrl() {
+        return rootUrl;
+    }
+
+    public FakeDrive drive() {
+        return drive;
+    }
+
+    public int connectionCount() {
+        return connections.size();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        connections.add(exchange.getRemoteAddress());
+        try (exchange) {
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            String url = rootUrl + exchange.getRequestURI().toString().replaceFirst("^/", "");
+            FakeDrive.Response r;
+            try {
+                r = drive.handle(exchange.getRequestMethod(), url,
+                        name -> exchange.getRequestHeaders().getFirst(name), body);
+            } catch (RuntimeException e) {
+                r = new FakeDrive.Response(500, Map.of("Content-Type", "text/plain"),
+                        String.valueOf(e).getBytes(StandardCharsets.UTF_8));
+            }
+            r.headers().forEach((k, v) -> exchange.getResponseHeaders().set(k, v));
+            boolean empty = r.body().length == 0 || "HEAD".equals(exchange.getRequestMethod());
+            exchange.sendResponseHeaders(r.status(), empty ? -1 : r.body().length);
+            if (!empty) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(r.body());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /** Opciones {@code clave=valor} de la línea de comandos */
+    static Map<String, String> options(String[] args) {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Se esperaba clave=valor: " + arg);
+            }
+            out.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return out;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = options(args);
+        FakeDriveServer server = new FakeDriveServer(
+                opts.getOrDefault("host", "127.0.0.1"),
+                Integer.parseInt(opts.getOrDefault("port", "8090")),
+                Duration.ofMillis(Long.parseLong(opts.getOrDefault("latencyMs", "0"))),
+                Long.parseLong(opts.getOrDefault("bandwidth", "0")));
+        server.drive().injectFaults(
+                Double.parseDouble(opts.getOrDefault("rate429", "0")),
+                Double.parseDouble(opts.getOrDefault("rate5xx", "0")),
+                Long.parseLong(opts.getOrDefault("seed", "42")));
+        System.out.println("Drive falso escuchando en " + server.rootUrl() + " (GDRIVE_ROOT_URL)");
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        new CountDownLatch(1).await();
+    }
+}
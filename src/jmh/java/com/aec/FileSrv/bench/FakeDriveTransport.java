@@ -0,0 +1,58 @@
+package com.aec.FileSrv.bench;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * {@link HttpTransport} que entrega cada petición del cliente Drive a un {@link FakeDrive} en el
+ * mismo proceso, sin sockets: se registra en el contexto y {@code GoogleDriveConfig} lo usa en
+ * lugar del transporte de red.
+ */
+public class FakeDriveTransport extends HttpTransport {
+
+    private final FakeDrive drive;
+
+    public FakeDriveTransport(FakeDrive drive) {
+        this.drive = drive;
+    }
+
+    @Override
+    public boolean supportsMethod(String method) {
+        return true; // PATCH incluido: no hace falta X-HTTP-Method-Override
+    }
+
+    @Override
+    protected LowLevelHttpRequest buildRequest(String method, String url) {
+        return new MockLowLevelHttpRequest(url) {
+            @Override
+            public LowLevelHttpResponse execute() throws IOException {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                if (getStreamingContent() != null) {
+                    getStreamingContent().writeTo(body);
+                }
+                // La codificación (gzip en los metadatos) no llega como cabecera sino aparte
+                FakeDrive.Response r = drive.handle(method, url,
+                        name -> "Content-Encoding".equalsIgnoreCase(name) ? getContentEncoding() : getFirstHeaderValue(name),
+                        body.toByteArray());
+                MockLowLevelHttpResponse response = new MockLowLevelHttpResponse()
+                        .setStatusCode(r.status())
+                        .setContent(r.body());
+                for (Map.Entry<String, String> h : r.headers().entrySet()) {
+                    if ("Content-Type".equalsIgnoreCase(h.getKey())) {
+                        response.setContentType(h.getValue());
+                    } else {
+                        response.addHeader(h.getKey(), h.getValue());
+                    }
+                }
+                return response;
+            }
+        };
+    }
+}
@@ -0,0 +1,387 @@
+package com.aec.FileSrv.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Prueba de carga de extremo a extremo contra los endpoints de {@code FileController}: N clientes
+ * concurrentes mezclan subidas, descargas y consultas de metadatos durante un tiempo fijo. Informa
+ * throughput, p50/p99 por operación y el heap e hilos del servicio (vía {@code /management/metrics})
+ * y guarda el resultado en JSON; con {@code baseline=} lo compara con una ejecución anterior y
+ * termina con código 1 si alguna métrica empeora más de {@code tolerance}.
+ *
+ * <p>Sin {@code target=} arranca en este mismo proceso la aplicación, Postgres embebido y un
+ * {@link FakeDriveServer}; heap e hilos incluyen entonces al propio generador. Para medir un pod
+ * aislado se arranca el servicio aparte con {@code GDRIVE_ROOT_URL} apuntando a un
+ * {@code FakeDriveServer} y se pasa {@code target=http://host:puerto}.
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec@load-test -Dload.args="concurrency=64 duration=120 latencyMs=40 rate429=0.01"
+ * mvn -Pjmh test-compile exec:exec@load-test -Dload.args="label=1.4.0 baseline=load-baselines/1.3.0.json"
+ * </pre>
+ */
+public final class LoadTest {
+
+    private static final long PRODUCT_ID_BASE = 10_000L;
+    private static final int KNOWN_IDS = 1024;
+
+    private final ObjectMapper json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final HttpClient http;
+    private final String baseUrl;
+    private final Map<String, String> opts;
+    private final int products;
+    private final byte[] payload;
+    private final Map<String, Integer> mix;
+
+    /** driveFileIds subidos hasta ahora, en anillo: las descargas eligen uno al azar */
+    private final AtomicReferenceArray<String> knownIds = new AtomicReferenceArray<>(KNOWN_IDS);
+    private final AtomicLong knownCount = new AtomicLong();
+    private final AtomicLong uploads = new AtomicLong();
+
+    LoadTest(String baseUrl, Map<String, String> opts, ExecutorService executor) {
+        this.baseUrl = baseUrl;
+        this.opts = opts;
+        this.products = Integer.parseInt(opts.getOrDefault("products", "16"));
+        this.payload = new byte[Integer.parseInt(opts.getOrDefault("fileSize", "1048576"))];
+        new Random(42).nextBytes(payload);
+        this.mix = mix(opts.getOrDefault("mix", "upload:20,download:70,meta:10"));
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(executor)
+                .build();
+    }
+
+    /** Latencias de una operación; solo las respuestas 2xx cuentan para los percentiles */
+    private static final class Samples {
+        private long[] nanos = new long[1024];
+        private int size;
+        private long errors;
+
+        synchronized void ok(long elapsed) {
+            if (size == nanos.length) nanos = Arrays.copyOf(nanos, size * 2);
+            nanos[size++] = elapsed;
+        }
+
+        synchronized void error() {
+            errors++;
+        }
+
+        synchronized ObjectNode summary(ObjectMapper json, double seconds) {
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            ObjectNode n = json.createObjectNode();
+            n.put("count", size);
+            n.put("errors", errors);
+            n.put("throughput", round(size / seconds));
+            n.put("p50Ms", round(percentile(sorted, 0.50) / 1e6));
+            n.put("p99Ms", round(percentile(sorted, 0.99) / 1e6));
+            n.put("maxMs", round((sorted.length == 0 ? 0 : sorted[sorted.length - 1]) / 1e6));
+            return n;
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            if (sorted.length == 0) return 0;
+            int idx = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+        }
+    }
+
+    /** Heap usado e hilos vivos del servicio, muestreados cada segundo */
+    private static final class ResourceSamples {
+        long maxHeap;
+        long heapSum;
+        long maxThreads;
+        long threadSum;
+        int count;
+
+        synchronized void add(long heap, long threads) {
+            maxHeap = Math.max(maxHeap, heap);
+            maxThreads = Math.max(maxThreads, threads);
+            heapSum += heap;
+            threadSum += threads;
+            count++;
+        }
+    }
+
+    ObjectNode run() throws Exception {
+        seed();
+        int concurrency = Integer.parseInt(opts.getOrDefault("concurrency", "32"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(opts.getOrDefault("warmup", "10")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(opts.getOrDefault("duration", "60")));
+
+        System.out.printf("Calentando %ds con %d clientes contra %s%n", warmup.toSeconds(), concurrency, baseUrl);
+        phase(concurrency, warmup, new LinkedHashMap<>(), null);
+
+        System.out.printf("Midiendo %ds%n", duration.toSeconds());
+        Map<String, Samples> samples = new LinkedHashMap<>();
+        mix.keySet().forEach(op -> samples.put(op, new Samples()));
+        ResourceSamples resources = new ResourceSamples();
+        long start = System.nanoTime();
+        phase(concurrency, duration, samples, resources);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        ObjectNode report = json.createObjectNode();
+        report.put("label", opts.getOrDefault("label", "dev"));
+        report.put("timestamp", Instant.now().toString());
+        ObjectNode config = report.putObject("config");
+        opts.forEach(config::put);
+        config.put("concurrency", concurrency);
+        config.put("durationSeconds", duration.toSeconds());
+        config.put("fileSize", payload.length);
+        ObjectNode operations = report.putObject("operations");
+        long total = 0;
+        for (Map.Entry<String, Samples> e : samples.entrySet()) {
+            ObjectNode s = e.getValue().summary(json, seconds);
+            operations.set(e.getKey(), s);
+            total += s.get("count").asLong();
+        }
+        report.put("throughput", round(total / seconds));
+        ObjectNode heap = report.putObject("heap");
+        ObjectNode threads = report.putObject("threads");
+        synchronized (resources) {
+            heap.put("maxUsedMb", round(resources.maxHeap / 1048576.0));
+            heap.put("avgUsedMb", round(resources.count == 0 ? 0 : resources.heapSum / 1048576.0 / resources.count));
+            threads.put("max", resources.maxThreads);
+            threads.put("avg", round(resources.count == 0 ? 0 : (double) resources.threadSum / resources.count));
+        }
+        return report;
+    }
+
+    /** Un producto con un archivo cada uno, para que las descargas y los metadatos tengan datos */
+    private void seed() throws IOException, InterruptedException {
+        for (int p = 0; p < products; p++) {
+            // Con fallos inyectados la subida puede fallar alguna vez: unos pocos intentos bastan
+            boolean ok = false;
+            for (int attempt = 0; attempt < 5 && !ok; attempt++) {
+                ok = upload(PRODUCT_ID_BASE + p);
+            }
+            if (!ok) {
+                throw new IllegalStateException("No se pudo sembrar el producto " + (PRODUCT_ID_BASE + p));
+            }
+        }
+    }
+
+    private void phase(int concurrency, Duration length, Map<String, Samples> samples, ResourceSamples resources)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + length.toNanos();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(Thread.ofVirtual().name("load-", i).start(() -> {
+                while (System.nanoTime() < deadline) {
+                    String op = pick();
+                    long t0 = System.nanoTime();
+                    boolean ok;
+                    try {
+                        ok = execute(op);
+                    } catch (IOException e) {
+                        ok = false;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    Samples s = samples.get(op);
+                    if (s == null) continue;
+                    if (ok) s.ok(System.nanoTime() - t0); else s.error();
+                }
+            }));
+        }
+        Thread sampler = resources == null ? null : Thread.ofVirtual().name("load-sampler").start(() -> {
+            while (System.nanoTime() < deadline) {
+                try {
+                    resources.add(metric("jvm.memory.used?tag=area:heap"), metric("jvm.threads.live"));
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    // Métrica puntual perdida: se sigue con la siguiente muestra
+                }
+            }
+        });
+        for (Thread w : workers) {
+            w.join();
+        }
+        if (sampler != null) {
+            sampler.interrupt();
+            sampler.join();
+        }
+    }
+
+    private String pick() {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int roll = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<String, Integer> e : mix.entrySet()) {
+            roll -= e.getValue();
+            if (roll < 0) return e.getKey();
+        }
+        throw new IllegalStateException("Mezcla vacía");
+    }
+
+    private boolean execute(String op) throws IOException, InterruptedException {
+        long product = PRODUCT_ID_BASE + ThreadLocalRandom.current().nextInt(products);
+        return switch (op) {
+            case "upload" -> upload(product);
+            case "download" -> get("/api/files/" + randomKnownId());
+            case "meta" -> get("/api/files/meta/product/" + product);
+            case "zip" -> get("/api/files/product/" + product + "/zip");
+            default -> throw new IllegalArgumentException("Operación desconocida: " + op);
+        };
+    }
+
+    /** Nombre y contenido nuevos en cada subida: ni reemplazos ni el atajo de deduplicación */
+    private boolean upload(long productId) throws IOException, InterruptedException {
+        long n = uploads.incrementAndGet();
+        byte[] content = payload.clone();
+        ByteBuffer.wrap(content).putLong(0, n);
+        String boundary = "load" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 256);
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"load-" + n + ".bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        HttpRequest request = HttpRequest.newBuilder(
+                        URI.create(baseUrl + "/api/files/public/" + productId + "?type=product&uploader=load"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+        HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() / 100 != 2) return false;
+        JsonNode saved = json.readTree(response.body());
+        if (saved.hasNonNull("driveFileId")) {
+            long slot = knownCount.getAndIncrement();
+            knownIds.set((int) (slot % KNOWN_IDS), saved.get("driveFileId").asText());
+        }
+        return true;
+    }
+
+    private String randomKnownId() {
+        long known = Math.min(knownCount.get(), KNOWN_IDS);
+        return knownIds.get(ThreadLocalRandom.current().nextInt((int) known));
+    }
+
+    private boolean get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+        return http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() / 100 == 2;
+    }
+
+    private long metric(String name) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/management/metrics/" + name)).GET().build();
+        HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode() + " en " + name);
+        }
+        return json.readTree(response.body()).path("measurements").path(0).path("value").asLong();
+    }
+
+    /** Compara con una ejecución anterior; devuelve cuántas métricas empeoran más de {@code tolerance} */
+    static int compare(JsonNode current, JsonNode baseline, double tolerance) {
+        System.out.printf("%nComparación con '%s' (%s), tolerancia %.0f%%%n",
+                baseline.path("label").asText(), baseline.path("timestamp").asText(), tolerance * 100);
+        int regressions = 0;
+        regressions += delta("throughput", current.path("throughput"), baseline.path("throughput"), true, tolerance);
+        for (var it = current.path("operations").fields(); it.hasNext(); ) {
+            var e = it.next();
+            JsonNode before = baseline.path("operations").path(e.getKey());
+            if (before.isMissingNode()) continue;
+            regressions += delta(e.getKey() + ".throughput", e.getValue().path("throughput"), before.path("throughput"), true, tolerance);
+            regressions += delta(e.getKey() + ".p50Ms", e.getValue().path("p50Ms"), before.path("p50Ms"), false, tolerance);
+            regressions += delta(e.getKey() + ".p99Ms", e.getValue().path("p99Ms"), before.path("p99Ms"), false, tolerance);
+        }
+        regressions += delta("heap.maxUsedMb", current.path("heap").path("maxUsedMb"), baseline.path("heap").path("maxUsedMb"), false, tolerance);
+        regressions += delta("threads.max", current.path("threads").path("max"), baseline.path("threads").path("max"), false, tolerance);
+        return regressions;
+    }
+
+    private static int delta(String name, JsonNode now, JsonNode before, boolean higherIsBetter, double tolerance) {
+        if (!now.isNumber() || !before.isNumber() || before.asDouble() == 0) return 0;
+        double change = (now.asDouble() - before.asDouble()) / before.asDouble();
+        boolean worse = higherIsBetter ? change < -tolerance : change > tolerance;
+        System.out.printf("  %-24s %12.2f -> %12.2f  %+7.1f%%%s%n", name, before.asDouble(), now.asDouble(),
+                change * 100, worse ? "  REGRESIÓN" : "");
+        return worse ? 1 : 0;
+    }
+
+    private static Map<String, Integer> mix(String spec) {
+        Map<String, Integer> out = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split(":");
+            int weight = Integer.parseInt(kv[1]);
+            if (weight > 0) out.put(kv[0], weight);
+        }
+        if (out.isEmpty()) throw new IllegalArgumentException("Mezcla vacía: " + spec);
+        return out;
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 100) / 100.0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = FakeDriveServer.options(args);
+        ObjectNode report;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            String target = opts.get("target");
+            if (target != null) {
+                report = new LoadTest(target.replaceFirst("/$", ""), opts, executor).run();
+            } else {
+                try (FakeDriveServer drive = new FakeDriveServer(
+                        Duration.ofMillis(Long.parseLong(opts.getOrDefault("latencyMs", "20"))),
+                        Long.parseLong(opts.getOrDefault("bandwidth", "0")));
+                     BenchContext app = new BenchContext(drive)) {
+                    drive.drive().injectFaults(
+                            Double.parseDouble(opts.getOrDefault("rate429", "0")),
+                            Double.parseDouble(opts.getOrDefault("rate5xx", "0")),
+                            Long.parseLong(opts.getOrDefault("seed", "42")));
+                    report = new LoadTest(app.baseUrl(), opts, executor).run();
+                    report.put("driveRequests", drive.drive().requestCount());
+                    report.put("driveFaults", drive.drive().faultCount());
+                }
+            }
+        }
+
+        ObjectMapper json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        System.out.println(json.writeValueAsString(report));
+        Path out = Path.of(opts.getOrDefault("out", "target/load-result.json"));
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        json.writeValue(out.toFile(), report);
+        System.out.println("Resultado guardado en " + out.toAbsolutePath());
+
+        String baseline = opts.get("baseline");
+        if (baseline != null) {
+            int regressions = compare(report, json.readTree(Path.of(baseline).toFile()),
+                    Double.parseDouble(opts.getOrDefault("tolerance", "0.10")));
+            if (regressions > 0) {
+                System.out.println(regressions + " métricas empeoran más de la tolerancia");
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.aec.FileSrv.bench;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * Certificado autofirmado para 127.0.0.1, generado con el {@code keytool} del propio JDK, para que
+ * el {@link FakeDriveServer} sirva HTTPS y los benchmarks midan también el handshake TLS.
+ */
+final class SelfSignedTls {
+
+    private static final String ALIAS = "fake-drive";
+    private static final char[] PASSWORD = "bench-only".toCharArray();
+
+    private final KeyStore keys;
+
+    private SelfSignedTls(KeyStore keys) {
+        this.keys = keys;
+    }
+
+    static SelfSignedTls create() throws IOException, GeneralSecurityException, InterruptedException {
+        Path dir = Files.createTempDirectory("fake-drive-tls-");
+        Path store = dir.resolve(ALIAS + ".p12");
+        Process keytool = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair", "-alias", ALIAS, "-keyalg", "EC", "-groupname", "secp256r1",
+                "-dname", "CN=127.0.0.1", "-ext", "SAN=ip:127.0.0.1", "-validity", "2",
+                "-storetype", "PKCS12", "-keystore", store.toString(), "-storepass", new String(PASSWORD))
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(keytool.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (keytool.waitFor() != 0) {
+            throw new IOException("keytool falló: " + output);
+        }
+        KeyStore keys = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(store)) {
+            keys.load(in, PASSWORD);
+        }
+        Files.delete(store);
+        Files.delete(dir);
+        return new SelfSignedTls(keys);
+    }
+
+    SSLContext serverContext() throws GeneralSecurityException {
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keys, PASSWORD);
+        SSLContext ssl = SSLContext.getInstance("TLS");
+        ssl.init(kmf.getKeyManagers(), null, null);
+        return ssl;
+    }
+
+    /** Contexto nuevo en cada llamada: cada transporte empieza con su caché de sesiones vacía */
+    SSLContext clientContext() throws GeneralSecurityException, IOException {
+        KeyStore trust = KeyStore.getInstance(KeyStore.getDefaultType());
+        trust.load(null, null);
+        trust.setCertificateEntry(ALIAS, keys.getCertificate(ALIAS));
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(trust);
+        SSLContext ssl = SSLContext.getInstance("TLS");
+        ssl.init(null, tmf.getTrustManagers(), null);
+        return ssl;
+    }
+}
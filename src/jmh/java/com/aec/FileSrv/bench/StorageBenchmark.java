@@ -0,0 +1,136 @@
+package com.aec.FileSrv.bench;
+
+import com.aec.FileSrv.dto.FileInfoDto;
+import com.aec.FileSrv.model.StoredFile;
+import com.aec.FileSrv.service.FileStorageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.Resource;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caminos calientes de {@link FileStorageService} con la aplicación completa, Postgres embebido y
+ * Drive falso. Throughput y percentiles de latencia (SampleTime); la tasa de asignación sale con
+ * {@code -prof gc}, que el perfil {@code jmh} del pom pasa por defecto:
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="StorageBenchmark.loadAsResource -p driveLatencyMs=50 -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class StorageBenchmark {
+
+    private static final long PRODUCT_ID = 1L;
+    /** Nombres que se van reemplazando en storeProductFile para que la tabla no crezca sin límite */
+    private static final int UPLOAD_NAMES = 16;
+
+    @Param({"0", "20"})
+    public long driveLatencyMs;
+
+    /** Bytes por segundo del Drive falso; 0 = ilimitado */
+    @Param({"0", "104857600"})
+    public long driveBandwidth;
+
+    @Param({"65536", "4194304"})
+    public int fileSize;
+
+    @Param({"8"})
+    public int filesPerProduct;
+
+    private BenchContext ctx;
+    private FileStorageService storage;
+    private byte[] payload;
+    private String downloadId;
+    private StoredFile dtoRow;
+    private final AtomicLong uploads = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        ctx = new BenchContext(Duration.ofMillis(driveLatencyMs), driveBandwidth);
+        storage = ctx.bean(FileStorageService.class);
+        payload = new byte[fileSize];
+        new Random(42).nextBytes(payload);
+
+        List<FileInfoDto> seeded = new ArrayList<>();
+        for (int i = 0; i < filesPerProduct; i++) {
+            seeded.add(storage.storeProductFile(file("seed-" + i + ".bin", i), "bench", PRODUCT_ID));
+        }
+        downloadId = seeded.get(0).getDriveFileId();
+
+        dtoRow = new StoredFile();
+        dtoRow.setId(1L);
+        dtoRow.setDriveFileId(downloadId);
+        dtoRow.setFilename("plano.rvt");
+        dtoRow.setOriginalName("plano.rvt");
+        dtoRow.setFileType("application/octet-stream");
+        dtoRow.setSize((long) fileSize);
+        dtoRow.setUploader("bench");
+        dtoRow.setUploadedAt(Instant.now());
+        dtoRow.setProductId(PRODUCT_ID);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        ctx.close();
+    }
+
+    /** Contenido distinto en cada llamada: se mide la subida real, no el atajo de deduplicación */
+    @Benchmark
+    public FileInfoDto storeProductFile() throws IOException {
+        long n = uploads.incrementAndGet();
+        return storage.storeProductFile(file("upload-" + (n % UPLOAD_NAMES) + ".bin", n), "bench", PRODUCT_ID);
+    }
+
+    @Benchmark
+    public long loadAsResource() throws IOException {
+        Resource resource = storage.loadAsResource(downloadId);
+        try (InputStream in = resource.getInputStream()) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    public void streamProductZipFromDrive() throws IOException {
+        storage.streamProductZipFromDrive(PRODUCT_ID, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public FileInfoDto toDto() {
+        return storage.toDto(dtoRow);
+    }
+
+    private MockMultipartFile file(String name, long salt) {
+        byte[] content = payload.clone();
+        ByteBuffer.wrap(content).putLong(0, salt);
+        return new MockMultipartFile("file", name, "application/octet-stream", content);
+    }
+}
@@ -0,0 +1,106 @@
+package com.aec.FileSrv.bench;
+
+import com.aec.FileSrv.config.GoogleHttpProperties;
+import com.aec.FileSrv.config.GoogleHttpTransportConfig;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code files.get} seguidos contra el {@link FakeDriveServer} (HTTPS con certificado autofirmado o
+ * HTTP plano) con el transporte de antes ({@code net-http}: {@code GoogleNetHttpTransport} es un
+ * {@code NetHttpTransport} sobre HttpURLConnection) y con el pool compartido ({@code pooled}).
+ * Con 16 hilos la caché keep-alive de HttpURLConnection (5 conexiones por host) se desborda y cada
+ * petición sobrante abre conexión y handshake nuevos; al terminar cada prueba se imprime cuántas
+ * conexiones TCP vio el servidor.
+ *
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="TransportBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class TransportBenchmark {
+
+    @Param({"net-http", "pooled"})
+    public String transport;
+
+    @Param({"true", "false"})
+    public boolean tls;
+
+    private FakeDriveServer server;
+    private HttpTransport http;
+    private Drive drive;
+    private String fileId;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        SelfSignedTls certs = tls ? SelfSignedTls.create() : null;
+        server = new FakeDriveServer("127.0.0.1", 0, Duration.ZERO, 0, certs != null ? certs.serverContext() : null);
+        SSLContext clientTls = certs != null ? certs.clientContext() : SSLContext.getDefault();
+        GoogleHttpProperties props = new GoogleHttpProperties();
+        http = switch (transport) {
+            case "net-http" -> new NetHttpTransport.Builder().setSslSocketFactory(clientTls.getSocketFactory()).build();
+            case "pooled" -> GoogleHttpTransportConfig.pooledTransport(props,
+                    GoogleHttpTransportConfig.connectionPool(props, clientTls));
+            default -> throw new IllegalArgumentException(transport);
+        };
+        drive = new Drive.Builder(http, GsonFactory.getDefaultInstance(),
+                        GoogleHttpTransportConfig.timeouts(props))
+                .setRootUrl(server.rootUrl())
+                .setApplicationName("bench")
+                .build();
+        fileId = drive.files().create(new File().setName("plano.rvt").setParents(List.of("bench")))
+                .setFields("id").execute().getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        System.out.printf("%n%s tls=%s: %d conexiones TCP para %d peticiones%n",
+                transport, tls, server.connectionCount(), server.drive().requestCount());
+        http.shutdown();
+        server.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public File getSequential() throws IOException {
+        return get();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public File getConcurrent() throws IOException {
+        return get();
+    }
+
+    private File get() throws IOException {
+        return drive.files().get(fileId).setFields("id,name,size").execute();
+    }
+}
@@ -0,0 +1,17 @@
+package com.aec.FileSrv.Repository;
+
+/**
+ * Proyección con sólo las columnas que necesita un {@code FileInfoDto}. Spring Data selecciona
+ * únicamente estas columnas, que son las que incluye el índice cubriente de product_id / order_id.
+ */
+public interface StoredFileMeta {
+    Long getId();
+    String getDriveFileId();
+    String getFilename();
+    String getOriginalName();
+    String getFileType();
+    Long getSize();
+    String getUploader();
+    Long getProductId();
+    Long getOrderId();
+}
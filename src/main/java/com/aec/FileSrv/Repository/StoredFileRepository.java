@@ -3,13 +3,19 @@ package com.aec.FileSrv.Repository;
 import com.aec.FileSrv.model.StoredFile;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface StoredFileRepository extends JpaRepository<StoredFile, Long> {
     List<StoredFile> findByProductId(Long productId);
+    List<StoredFile> findByOrderId(Long orderId);
+    List<StoredFileMeta> findByProductIdIn(Collection<Long> productIds);
+    List<StoredFileMeta> findByOrderIdIn(Collection<Long> orderIds);
     Optional<StoredFile> findByDriveFileId(String driveFileId);
+    List<StoredFile> findByDriveFileIdIn(Collection<String> driveFileIds);
     Optional<StoredFile> findByProductIdAndFilename(Long productId, String filename);
     Optional<StoredFile> findByOrderIdAndFilename(Long orderId, String filename);
+    Optional<StoredFile> findFirstBySha256AndSizeOrderByIdAsc(String sha256, Long size);
 
 }
@@ -0,0 +1,51 @@
+package com.aec.FileSrv.Repository;
+
+import com.aec.FileSrv.model.UploadJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface UploadJobRepository extends JpaRepository<UploadJob, String> {
+    List<UploadJob> findByOwnerAndStatusOrderByCreatedAtAsc(String owner, UploadJob.Status status);
+
+    /** Pasa el trabajo de QUEUED a RUNNING sólo si nadie lo tomó antes; devuelve 1 si lo consiguió */
+    @Modifying
+    @Transactional
+    @Query("update UploadJob j set j.status = com.aec.FileSrv.model.UploadJob.Status.RUNNING, "
+            + "j.attempts = j.attempts + 1, j.updatedAt = :now "
+            + "where j.id = :id and j.status = com.aec.FileSrv.model.UploadJob.Status.QUEUED")
+    int claim(@Param("id") String id, @Param("now") Instant now);
+
+    /** Renueva el arriendo (updatedAt) de los trabajos pendientes de una instancia viva */
+    @Modifying
+    @Transactional
+    @Query("update UploadJob j set j.updatedAt = :now where j.owner = :owner and j.status in :statuses")
+    int renew(@Param("owner") String owner, @Param("statuses") Collection<UploadJob.Status> statuses,
+              @Param("now") Instant now);
+
+    List<UploadJob> findByStatusInAndOwnerNotAndUpdatedAtBefore(Collection<UploadJob.Status> statuses, String owner,
+                                                               Instant before);
+
+    /**
+     * Pasa a esta instancia un trabajo cuyo dueño dejó de renovar el arriendo, de vuelta en cola.
+     * Devuelve 1 sólo a la instancia que lo consiguió.
+     */
+    @Modifying
+    @Transactional
+    @Query("update UploadJob j set j.owner = :owner, j.status = com.aec.FileSrv.model.UploadJob.Status.QUEUED, "
+            + "j.updatedAt = :now "
+            + "where j.id = :id and j.owner = :previous and j.updatedAt < :expired "
+            + "and j.status in (com.aec.FileSrv.model.UploadJob.Status.QUEUED, com.aec.FileSrv.model.UploadJob.Status.RUNNING)")
+    int takeOver(@Param("id") String id, @Param("previous") String previous, @Param("owner") String owner,
+                 @Param("expired") Instant expired, @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    long deleteByStatusInAndUpdatedAtBefore(Collection<UploadJob.Status> statuses, Instant before);
+}
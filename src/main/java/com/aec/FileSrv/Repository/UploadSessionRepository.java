@@ -0,0 +1,30 @@
+package com.aec.FileSrv.Repository;
+
+import com.aec.FileSrv.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, Long> {
+    List<UploadSession> findByOwnerAndStatus(String owner, UploadSession.Status status);
+
+    List<UploadSession> findByStatusAndOwnerNotAndUpdatedAtBefore(UploadSession.Status status, String owner,
+                                                                  Instant before);
+
+    /**
+     * Pasa a esta instancia una sesión UPLOADING que no avanza desde {@code expired}.
+     * Devuelve 1 sólo a la instancia que lo consiguió.
+     */
+    @Modifying
+    @Transactional
+    @Query("update UploadSession s set s.owner = :owner, s.updatedAt = :now "
+            + "where s.id = :id and s.owner = :previous and s.updatedAt < :expired "
+            + "and s.status = com.aec.FileSrv.model.UploadSession.Status.UPLOADING")
+    int takeOver(@Param("id") Long id, @Param("previous") String previous, @Param("owner") String owner,
+                 @Param("expired") Instant expired, @Param("now") Instant now);
+}
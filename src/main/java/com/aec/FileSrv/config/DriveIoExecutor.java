@@ -0,0 +1,42 @@
+package com.aec.FileSrv.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Pool compartido para E/S bloqueante contra Drive (prefetch de ZIP, etc.).
+ * No se expone como bean {@code Executor} para no desplazar el applicationTaskExecutor de Spring Boot.
+ */
+@Component
+public class DriveIoExecutor {
+
+    private final ExecutorService pool;
+
+    public DriveIoExecutor(FileServiceProperties props, Environment env) {
+        boolean virtual = IoThreads.virtual(env);
+        // Con hilos virtuales no hace falta un pool: la concurrencia ya la acotan quienes envían
+        // (ventana de prefetch del ZIP, batch-upload-concurrency)
+        this.pool = virtual
+                ? Executors.newThreadPerTaskExecutor(IoThreads.factory("drive-io", true))
+                : Executors.newFixedThreadPool(Math.max(1, props.getDriveIoThreads()), IoThreads.factory("drive-io", false));
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        return pool.submit(task);
+    }
+
+    public void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
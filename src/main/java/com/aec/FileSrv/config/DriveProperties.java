@@ -2,6 +2,9 @@ package com.aec.FileSrv.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
 
 @Component
 @ConfigurationProperties(prefix = "gdrive")
@@ -10,9 +13,86 @@ public class DriveProperties {
     private String folderProductId;
     /** Carpeta para archivos de COMPROBANTES */
     private String folderReceiptId;
+    /** Máximo de carpetas (parentId/nombre) recordadas en memoria */
+    private int folderCacheMaxEntries = 1000;
+    /** Tiempo que una carpeta resuelta se considera válida sin volver a consultar Drive */
+    private Duration folderCacheTtl = Duration.ofMinutes(30);
+    /** URL base de la API (vacío = Google). Permite apuntar a un Drive falso local en pruebas */
+    private String rootUrl;
+    /** A partir de este tamaño se usa el protocolo de subida reanudable */
+    private DataSize resumableThreshold = DataSize.ofMegabytes(16);
+    /** Tamaño de cada chunk reanudable; se redondea a múltiplos de 256 KiB */
+    private DataSize resumableChunkSize = DataSize.ofMegabytes(8);
+    /** Reintentos por chunk antes de abandonar (la sesión queda persistida para reanudar) */
+    private int resumableMaxRetries = 5;
+    /** Espera inicial del backoff exponencial entre reintentos de un chunk */
+    private Duration resumableInitialBackoff = Duration.ofMillis(500);
+    /** Directorio donde se guarda la copia local de las subidas reanudables */
+    private String uploadSessionDir = "uploads/.sessions";
+    /**
+     * Una sesión UPLOADING de otra instancia sin avanzar durante este tiempo (p. ej. el pod se
+     * reemplazó y cambió el instance-id) pasa a ésta, que la retoma o la marca FAILED si la copia
+     * local no está en su disco.
+     */
+    private Duration uploadSessionLease = Duration.ofMinutes(15);
+    /** Regulador de llamadas a Drive (token bucket + concurrencia AIMD + reintentos) */
+    private boolean governorEnabled = true;
+    /** Ritmo sostenido de llamadas; por defecto el 75% de la cuota estándar de 12.000 por minuto */
+    private double governorRatePerSecond = 150;
+    /** Llamadas que pueden salir de golpe tras un periodo de calma */
+    private int governorBurst = 50;
+    /** Concurrencia inicial y sus límites; baja a la mitad con cada 429/403 de cuota */
+    private int governorInitialLimit = 16;
+    private int governorMinLimit = 2;
+    private int governorMaxLimit = 64;
+    /** Espera máxima por turno antes de fallar la llamada sin llegar a Drive */
+    private Duration governorAcquireTimeout = Duration.ofSeconds(30);
+    /** Reintentos tras un rechazo por cuota (cualquier operación) o un 5xx (sólo idempotentes) */
+    private int governorMaxRetries = 5;
+    /** Backoff exponencial con jitter completo entre reintentos; Retry-After manda si es mayor */
+    private Duration governorInitialBackoff = Duration.ofSeconds(1);
+    private Duration governorMaxBackoff = Duration.ofSeconds(32);
 
     public String getFolderProductId() { return folderProductId; }
     public void setFolderProductId(String folderProductId) { this.folderProductId = folderProductId; }
     public String getFolderReceiptId() { return folderReceiptId; }
     public void setFolderReceiptId(String folderReceiptId) { this.folderReceiptId = folderReceiptId; }
-}
\ No newline at end of file
+    public int getFolderCacheMaxEntries() { return folderCacheMaxEntries; }
+    public void setFolderCacheMaxEntries(int folderCacheMaxEntries) { this.folderCacheMaxEntries = folderCacheMaxEntries; }
+    public Duration getFolderCacheTtl() { return folderCacheTtl; }
+    public void setFolderCacheTtl(Duration folderCacheTtl) { this.folderCacheTtl = folderCacheTtl; }
+    public String getRootUrl() { return rootUrl; }
+    public void setRootUrl(String rootUrl) { this.rootUrl = rootUrl; }
+    public DataSize getResumableThreshold() { return resumableThreshold; }
+    public void setResumableThreshold(DataSize resumableThreshold) { this.resumableThreshold = resumableThreshold; }
+    public DataSize getResumableChunkSize() { return resumableChunkSize; }
+    public void setResumableChunkSize(DataSize resumableChunkSize) { this.resumableChunkSize = resumableChunkSize; }
+    public int getResumableMaxRetries() { return resumableMaxRetries; }
+    public void setResumableMaxRetries(int resumableMaxRetries) { this.resumableMaxRetries = resumableMaxRetries; }
+    public Duration getResumableInitialBackoff() { return resumableInitialBackoff; }
+    public void setResumableInitialBackoff(Duration resumableInitialBackoff) { this.resumableInitialBackoff = resumableInitialBackoff; }
+    public String getUploadSessionDir() { return uploadSessionDir; }
+    public void setUploadSessionDir(String uploadSessionDir) { this.uploadSessionDir = uploadSessionDir; }
+    public Duration getUploadSessionLease() { return uploadSessionLease; }
+    public void setUploadSessionLease(Duration uploadSessionLease) { this.uploadSessionLease = uploadSessionLease; }
+    public boolean isGovernorEnabled() { return governorEnabled; }
+    public void setGovernorEnabled(boolean governorEnabled) { this.governorEnabled = governorEnabled; }
+    public double getGovernorRatePerSecond() { return governorRatePerSecond; }
+    public void setGovernorRatePerSecond(double governorRatePerSecond) { this.governorRatePerSecond = governorRatePerSecond; }
+    public int getGovernorBurst() { return governorBurst; }
+    public void setGovernorBurst(int governorBurst) { this.governorBurst = governorBurst; }
+    public int getGovernorInitialLimit() { return governorInitialLimit; }
+    public void setGovernorInitialLimit(int governorInitialLimit) { this.governorInitialLimit = governorInitialLimit; }
+    public int getGovernorMinLimit() { return governorMinLimit; }
+    public void setGovernorMinLimit(int governorMinLimit) { this.governorMinLimit = governorMinLimit; }
+    public int getGovernorMaxLimit() { return governorMaxLimit; }
+    public void setGovernorMaxLimit(int governorMaxLimit) { this.governorMaxLimit = governorMaxLimit; }
+    public Duration getGovernorAcquireTimeout() { return governorAcquireTimeout; }
+    public void setGovernorAcquireTimeout(Duration governorAcquireTimeout) { this.governorAcquireTimeout = governorAcquireTimeout; }
+    public int getGovernorMaxRetries() { return governorMaxRetries; }
+    public void setGovernorMaxRetries(int governorMaxRetries) { this.governorMaxRetries = governorMaxRetries; }
+    public Duration getGovernorInitialBackoff() { return governorInitialBackoff; }
+    public void setGovernorInitialBackoff(Duration governorInitialBackoff) { this.governorInitialBackoff = governorInitialBackoff; }
+    public Duration getGovernorMaxBackoff() { return governorMaxBackoff; }
+    public void setGovernorMaxBackoff(Duration governorMaxBackoff) { this.governorMaxBackoff = governorMaxBackoff; }
+}
@@ -0,0 +1,126 @@
+package com.aec.FileSrv.config;
+
+import com.aec.FileSrv.service.ProductZipArtifactStore;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "file-service")
+public class FileServiceProperties {
+    /** URL pública del gateway, base de los downloadUri */
+    private String gatewayBaseUrl;
+    /** Cache-Control por tipo MIME (admite comodines: image/*). Gana la primera coincidencia */
+    private Map<String, String> cacheControl = new LinkedHashMap<>();
+    /** Cache-Control cuando ningún patrón coincide */
+    private String cacheControlDefault = "no-cache";
+    /** Caché en disco local del contenido descargado de Drive */
+    private boolean contentCacheEnabled = true;
+    private String contentCacheDir = "uploads/.cache";
+    /** Presupuesto total en disco; al superarlo se expulsan los menos usados */
+    private DataSize contentCacheMaxSize = DataSize.ofGigabytes(2);
+    /** Archivos mayores no se cachean (no compensa desplazar muchos pequeños populares) */
+    private DataSize contentCacheMaxFileSize = DataSize.ofMegabytes(200);
+    /** Hilos del pool compartido de E/S contra Drive (con hilos virtuales no se usa) */
+    private int driveIoThreads = 16;
+    /** Entradas del ZIP que se descargan en paralelo por delante de la que se está escribiendo */
+    private int zipPrefetchConcurrency = 4;
+    /** Entradas de hasta este tamaño se guardan en memoria; las mayores se vuelcan a disco */
+    private DataSize zipPrefetchMemoryPerEntry = DataSize.ofMegabytes(8);
+    /** off | on-demand (se construye tras la primera petición) | eager (también tras cada subida) */
+    private ProductZipArtifactStore.Mode zipArtifactMode = ProductZipArtifactStore.Mode.ON_DEMAND;
+    private String zipArtifactDir = "uploads/.zips";
+    /** Presupuesto en disco de los ZIP materializados; al superarlo se expulsan los menos usados */
+    private DataSize zipArtifactMaxSize = DataSize.ofGigabytes(5);
+    /** Archivos de un mismo lote que se suben a Drive a la vez */
+    private int batchUploadConcurrency = 4;
+    /** Publica también las descargas reactivas en /api/files/rx/** (WebFlux sobre E/S no bloqueante del servlet) */
+    private boolean reactiveEnabled = false;
+    /** Subidas asíncronas: copia local, workers que suben a Drive, reintentos y retención de trabajos terminados */
+    private String uploadJobDir = "uploads/.jobs";
+    /** Identifica la instancia dueña de la copia local; debe ser estable si el directorio sobrevive al reinicio */
+    private String instanceId = "local";
+    private int uploadJobWorkers = 2;
+    private int uploadJobMaxAttempts = 5;
+    private Duration uploadJobRetention = Duration.ofDays(7);
+    /**
+     * Arriendo de los trabajos pendientes: cada barrido lo renueva. Pasado este tiempo sin renovar
+     * (p. ej. el pod se reemplazó y cambió el instance-id) otra instancia los toma. Debe ser
+     * bastante mayor que upload-job-sweep-ms.
+     */
+    private Duration uploadJobLease = Duration.ofMinutes(5);
+    /**
+     * Caché en memoria de metadatos por driveFileId. El TTL es lo que tarda esta réplica en ver
+     * una escritura hecha en otra (ETag y contentVersion incluidos), por eso se mide en segundos.
+     */
+    private int metaCacheMaxEntries = 10_000;
+    private Duration metaCacheTtl = Duration.ofSeconds(5);
+    private Duration metaCacheNegativeTtl = Duration.ofSeconds(5);
+    /** Cabecera Server-Timing (BD, metadatos de Drive, transferencia con Drive) en cada respuesta */
+    private boolean serverTimingEnabled = true;
+
+    public String getGatewayBaseUrl() { return gatewayBaseUrl; }
+    public void setGatewayBaseUrl(String gatewayBaseUrl) { this.gatewayBaseUrl = gatewayBaseUrl; }
+    public Map<String, String> getCacheControl() { return cacheControl; }
+    public void setCacheControl(Map<String, String> cacheControl) { this.cacheControl = cacheControl; }
+    public String getCacheControlDefault() { return cacheControlDefault; }
+    public void setCacheControlDefault(String cacheControlDefault) { this.cacheControlDefault = cacheControlDefault; }
+    public boolean isContentCacheEnabled() { return contentCacheEnabled; }
+    public void setContentCacheEnabled(boolean contentCacheEnabled) { this.contentCacheEnabled = contentCacheEnabled; }
+    public String getContentCacheDir() { return contentCacheDir; }
+    public void setContentCacheDir(String contentCacheDir) { this.contentCacheDir = contentCacheDir; }
+    public DataSize getContentCacheMaxSize() { return contentCacheMaxSize; }
+    public void setContentCacheMaxSize(DataSize contentCacheMaxSize) { this.contentCacheMaxSize = contentCacheMaxSize; }
+    public DataSize getContentCacheMaxFileSize() { return contentCacheMaxFileSize; }
+    public void setContentCacheMaxFileSize(DataSize contentCacheMaxFileSize) { this.contentCacheMaxFileSize = contentCacheMaxFileSize; }
+    public int getDriveIoThreads() { return driveIoThreads; }
+    public void setDriveIoThreads(int driveIoThreads) { this.driveIoThreads = driveIoThreads; }
+    public int getZipPrefetchConcurrency() { return zipPrefetchConcurrency; }
+    public void setZipPrefetchConcurrency(int zipPrefetchConcurrency) { this.zipPrefetchConcurrency = zipPrefetchConcurrency; }
+    public DataSize getZipPrefetchMemoryPerEntry() { return zipPrefetchMemoryPerEntry; }
+    public void setZipPrefetchMemoryPerEntry(DataSize zipPrefetchMemoryPerEntry) { this.zipPrefetchMemoryPerEntry = zipPrefetchMemoryPerEntry; }
+    public ProductZipArtifactStore.Mode getZipArtifactMode() { return zipArtifactMode; }
+    public void setZipArtifactMode(ProductZipArtifactStore.Mode zipArtifactMode) { this.zipArtifactMode = zipArtifactMode; }
+    public String getZipArtifactDir() { return zipArtifactDir; }
+    public void setZipArtifactDir(String zipArtifactDir) { this.zipArtifactDir = zipArtifactDir; }
+    public DataSize getZipArtifactMaxSize() { return zipArtifactMaxSize; }
+    public void setZipArtifactMaxSize(DataSize zipArtifactMaxSize) { this.zipArtifactMaxSize = zipArtifactMaxSize; }
+    public int getBatchUploadConcurrency() { return batchUploadConcurrency; }
+    public void setBatchUploadConcurrency(int batchUploadConcurrency) { this.batchUploadConcurrency = batchUploadConcurrency; }
+    public boolean isReactiveEnabled() { return reactiveEnabled; }
+    public void setReactiveEnabled(boolean reactiveEnabled) { this.reactiveEnabled = reactiveEnabled; }
+    public String getInstanceId() { return instanceId; }
+    public void setInstanceId(String instanceId) { this.instanceId = instanceId; }
+    public String getUploadJobDir() { return uploadJobDir; }
+    public void setUploadJobDir(String uploadJobDir) { this.uploadJobDir = uploadJobDir; }
+    public int getUploadJobWorkers() { return uploadJobWorkers; }
+    public void setUploadJobWorkers(int uploadJobWorkers) { this.uploadJobWorkers = uploadJobWorkers; }
+    public int getUploadJobMaxAttempts() { return uploadJobMaxAttempts; }
+    public void setUploadJobMaxAttempts(int uploadJobMaxAttempts) { this.uploadJobMaxAttempts = uploadJobMaxAttempts; }
+    public Duration getUploadJobRetention() { return uploadJobRetention; }
+    public void setUploadJobRetention(Duration uploadJobRetention) { this.uploadJobRetention = uploadJobRetention; }
+    public Duration getUploadJobLease() { return uploadJobLease; }
+    public void setUploadJobLease(Duration uploadJobLease) { this.uploadJobLease = uploadJobLease; }
+    public int getMetaCacheMaxEntries() { return metaCacheMaxEntries; }
+    public void setMetaCacheMaxEntries(int metaCacheMaxEntries) { this.metaCacheMaxEntries = metaCacheMaxEntries; }
+    public Duration getMetaCacheTtl() { return metaCacheTtl; }
+    public void setMetaCacheTtl(Duration metaCacheTtl) { this.metaCacheTtl = metaCacheTtl; }
+    public Duration getMetaCacheNegativeTtl() { return metaCacheNegativeTtl; }
+    public void setMetaCacheNegativeTtl(Duration metaCacheNegativeTtl) { this.metaCacheNegativeTtl = metaCacheNegativeTtl; }
+    public boolean isServerTimingEnabled() { return serverTimingEnabled; }
+    public void setServerTimingEnabled(boolean serverTimingEnabled) { this.serverTimingEnabled = serverTimingEnabled; }
+
+    public String cacheControlFor(MediaType type) {
+        for (Map.Entry<String, String> e : cacheControl.entrySet()) {
+            if (MediaType.parseMediaType(e.getKey()).includes(type)) {
+                return e.getValue();
+            }
+        }
+        return cacheControlDefault;
+    }
+}
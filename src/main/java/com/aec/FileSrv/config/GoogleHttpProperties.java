@@ -0,0 +1,46 @@
+package com.aec.FileSrv.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/** Transporte HTTP compartido por el cliente Drive y el refresco de tokens OAuth */
+@Component
+@ConfigurationProperties(prefix = "google.http")
+public class GoogleHttpProperties {
+    /** Conexiones abiertas como máximo en total y hacia un mismo host (casi todo va a www.googleapis.com) */
+    private int maxConnections = 200;
+    private int maxConnectionsPerRoute = 100;
+    /** Conexiones ociosas más tiempo que esto se cierran antes de que lo haga el servidor */
+    private Duration idleTimeout = Duration.ofSeconds(30);
+    /** Vida máxima de una conexión del pool, aunque siga en uso por keep-alive */
+    private Duration connectionTtl = Duration.ofMinutes(5);
+    /** Una conexión ociosa más de esto se comprueba antes de reutilizarla */
+    private Duration validateAfterInactivity = Duration.ofSeconds(2);
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    /** Tiempo máximo sin recibir bytes; las descargas largas siguen mientras lleguen datos */
+    private Duration readTimeout = Duration.ofSeconds(60);
+    /** Sesiones TLS recordadas para reanudar el handshake en conexiones nuevas */
+    private int tlsSessionCacheSize = 256;
+    private Duration tlsSessionTimeout = Duration.ofHours(1);
+
+    public int getMaxConnections() { return maxConnections; }
+    public void setMaxConnections(int maxConnections) { this.maxConnections = maxConnections; }
+    public int getMaxConnectionsPerRoute() { return maxConnectionsPerRoute; }
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) { this.maxConnectionsPerRoute = maxConnectionsPerRoute; }
+    public Duration getIdleTimeout() { return idleTimeout; }
+    public void setIdleTimeout(Duration idleTimeout) { this.idleTimeout = idleTimeout; }
+    public Duration getConnectionTtl() { return connectionTtl; }
+    public void setConnectionTtl(Duration connectionTtl) { this.connectionTtl = connectionTtl; }
+    public Duration getValidateAfterInactivity() { return validateAfterInactivity; }
+    public void setValidateAfterInactivity(Duration validateAfterInactivity) { this.validateAfterInactivity = validateAfterInactivity; }
+    public Duration getConnectTimeout() { return connectTimeout; }
+    public void setConnectTimeout(Duration connectTimeout) { this.connectTimeout = connectTimeout; }
+    public Duration getReadTimeout() { return readTimeout; }
+    public void setReadTimeout(Duration readTimeout) { this.readTimeout = readTimeout; }
+    public int getTlsSessionCacheSize() { return tlsSessionCacheSize; }
+    public void setTlsSessionCacheSize(int tlsSessionCacheSize) { this.tlsSessionCacheSize = tlsSessionCacheSize; }
+    public Duration getTlsSessionTimeout() { return tlsSessionTimeout; }
+    public void setTlsSessionTimeout(Duration tlsSessionTimeout) { this.tlsSessionTimeout = tlsSessionTimeout; }
+}
@@ -0,0 +1,102 @@
+package com.aec.FileSrv.config;
+
+import com.google.api.client.googleapis.GoogleUtils;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import com.google.api.client.util.SslUtils;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultRoutePlanner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import java.io.IOException;
+import java.net.ProxySelector;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Un único {@link HttpTransport} con pool de conexiones (Apache HttpClient) para Drive y OAuth, en
+ * lugar de un {@code GoogleNetHttpTransport} por cliente: keep-alive real bajo concurrencia, pool
+ * acotado, expulsión de conexiones ociosas y un solo {@link SSLContext} cuyas sesiones TLS se
+ * reanudan al abrir conexiones nuevas. Un {@code HttpTransport} registrado en el contexto (el
+ * Drive falso de los benchmarks) ocupa su lugar.
+ */
+@Configuration
+public class GoogleHttpTransportConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean(HttpTransport.class)
+    public HttpTransport googleHttpTransport(GoogleHttpProperties props, MeterRegistry registry)
+            throws GeneralSecurityException, IOException {
+        SSLContext ssl = SslUtils.getTlsSslContext();
+        SslUtils.initSslContext(ssl, GoogleUtils.getCertificateTrustStore(), SslUtils.getPkixTrustManagerFactory());
+        PoolingHttpClientConnectionManager pool = connectionPool(props, ssl);
+        poolGauge(registry, "leased", pool, p -> p.getTotalStats().getLeased());
+        poolGauge(registry, "available", pool, p -> p.getTotalStats().getAvailable());
+        poolGauge(registry, "pending", pool, p -> p.getTotalStats().getPending());
+        return pooledTransport(props, pool);
+    }
+
+    /** Pool acotado sobre un único {@code ssl}, cuya caché de sesiones permite reanudar el handshake */
+    public static PoolingHttpClientConnectionManager connectionPool(GoogleHttpProperties props, SSLContext ssl) {
+        SSLSessionContext tlsSessions = ssl.getClientSessionContext();
+        tlsSessions.setSessionCacheSize(props.getTlsSessionCacheSize());
+        tlsSessions.setSessionTimeout((int) props.getTlsSessionTimeout().toSeconds());
+
+        PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", new SSLConnectionSocketFactory(ssl,
+                                SSLConnectionSocketFactory.getDefaultHostnameVerifier()))
+                        .build(),
+                null, null, null, props.getConnectionTtl().toMillis(), TimeUnit.MILLISECONDS);
+        pool.setMaxTotal(props.getMaxConnections());
+        pool.setDefaultMaxPerRoute(props.getMaxConnectionsPerRoute());
+        pool.setValidateAfterInactivity((int) props.getValidateAfterInactivity().toMillis());
+        return pool;
+    }
+
+    public static HttpTransport pooledTransport(GoogleHttpProperties props, PoolingHttpClientConnectionManager pool) {
+        // Como ApacheHttpTransport.newDefaultHttpClientBuilder(): redirecciones y reintentos los
+        // gestionan el cliente de Google y DriveGovernor, no HttpClient
+        CloseableHttpClient client = HttpClientBuilder.create()
+                .useSystemProperties()
+                .setConnectionManager(pool)
+                .setRoutePlanner(new SystemDefaultRoutePlanner(ProxySelector.getDefault()))
+                .evictExpiredConnections()
+                .evictIdleConnections(props.getIdleTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .disableRedirectHandling()
+                .disableAutomaticRetries()
+                .build();
+        return new ApacheHttpTransport(client);
+    }
+
+    /**
+     * Timeouts de conexión y lectura para cada petición: el cliente de Google fija los suyos (20 s)
+     * en cada {@code HttpRequest} y prevalecen sobre los por defecto del HttpClient.
+     */
+    public static HttpRequestInitializer timeouts(GoogleHttpProperties props) {
+        return request -> {
+            request.setConnectTimeout((int) props.getConnectTimeout().toMillis());
+            request.setReadTimeout((int) props.getReadTimeout().toMillis());
+        };
+    }
+
+    private static void poolGauge(MeterRegistry registry, String state, PoolingHttpClientConnectionManager pool,
+                                  ToDoubleFunction<PoolingHttpClientConnectionManager> value) {
+        Gauge.builder("google.http.pool.connections", pool, value).tag("state", state).register(registry);
+    }
+}
@@ -0,0 +1,32 @@
+package com.aec.FileSrv.config;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fábrica de hilos para los pools internos de E/S. Con {@code spring.threads.virtual.enabled=true}
+ * (y Java 21) crea hilos virtuales, igual que hace Spring Boot con Tomcat, {@code @Async} y {@code @Scheduled}.
+ */
+public final class IoThreads {
+
+    private IoThreads() { }
+
+    public static boolean virtual(Environment env) {
+        return Threading.VIRTUAL.isActive(env);
+    }
+
+    public static ThreadFactory factory(String prefix, boolean virtual) {
+        if (virtual) {
+            return Thread.ofVirtual().name(prefix + "-", 1).factory();
+        }
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
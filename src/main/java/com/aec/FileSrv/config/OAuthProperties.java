@@ -3,12 +3,16 @@ package com.aec.FileSrv.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Component
 @ConfigurationProperties(prefix = "google.oauth")
 public class OAuthProperties {
     private String clientId;
     private String clientSecret;
     private String redirectUri; // https://production-31f3.up.railway.app/api/files/oauth2/callback
+    /** Antelación con la que el refresco programado renueva el access token */
+    private Duration refreshAhead = Duration.ofMinutes(5);
 
     public String getClientId() { return clientId; }
     public void setClientId(String clientId) { this.clientId = clientId; }
@@ -16,4 +20,6 @@ public class OAuthProperties {
     public void setClientSecret(String clientSecret) { this.clientSecret = clientSecret; }
     public String getRedirectUri() { return redirectUri; }
     public void setRedirectUri(String redirectUri) { this.redirectUri = redirectUri; }
+    public Duration getRefreshAhead() { return refreshAhead; }
+    public void setRefreshAhead(Duration refreshAhead) { this.refreshAhead = refreshAhead; }
 }
\ No newline at end of file
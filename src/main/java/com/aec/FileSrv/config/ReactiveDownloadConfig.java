@@ -0,0 +1,37 @@
+package com.aec.FileSrv.config;
+
+import com.aec.FileSrv.controller.ReactiveFileHandler;
+import com.aec.FileSrv.service.FileStorageService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ServletHttpHandlerAdapter;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+
+/**
+ * Monta las rutas reactivas de descarga como un servlet aparte en /api/files/rx/*, junto al
+ * DispatcherServlet. {@link ServletHttpHandlerAdapter} usa la E/S asíncrona de Servlet 3.1,
+ * así Tomcat sólo ocupa un hilo cuando hay bytes que escribir.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "file-service", name = "reactive-enabled", havingValue = "true")
+public class ReactiveDownloadConfig {
+
+    @Bean
+    public ReactiveFileHandler reactiveFileHandler(FileStorageService storage, FileServiceProperties props) {
+        return new ReactiveFileHandler(storage, props);
+    }
+
+    @Bean
+    public ServletRegistrationBean<ServletHttpHandlerAdapter> reactiveFileServlet(ReactiveFileHandler handler) {
+        HttpHandler httpHandler = RouterFunctions.toHttpHandler(handler.routes());
+        ServletRegistrationBean<ServletHttpHandlerAdapter> registration =
+                new ServletRegistrationBean<>(new ServletHttpHandlerAdapter(httpHandler), "/api/files/rx/*");
+        registration.setName("reactiveFiles");
+        registration.setAsyncSupported(true);
+        registration.setLoadOnStartup(1);
+        return registration;
+    }
+}
@@ -113,15 +113,17 @@ public class SecurityConfig {
         };
     }
 
-    @Bean
-    public CorsConfigurationSource corsConfigurationSource() {
-        CorsConfiguration cfg = new CorsConfiguration();
-        cfg.setAllowedOrigins(List.of(
+    static final List<String> ALLOWED_ORIGINS = List.of(
             "https://gateway-production-129e.up.railway.app",
             "https://aecf-production.up.railway.app",
             "https://file-service-production-31f3.up.railway.app",
             "https://aecblock.com"
-        ));
+    );
+
+    @Bean
+    public CorsConfigurationSource corsConfigurationSource() {
+        CorsConfiguration cfg = new CorsConfiguration();
+        cfg.setAllowedOrigins(ALLOWED_ORIGINS);
         cfg.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         cfg.setAllowedHeaders(List.of("*"));
         cfg.setAllowCredentials(true);
@@ -0,0 +1,56 @@
+package com.aec.FileSrv.config;
+
+import java.util.Locale;
+
+/**
+ * Tiempos acumulados de la petición en curso para la cabecera {@code Server-Timing}.
+ * Se guardan por hilo: lo que se hace en otros pools (subidas por lotes, prefetch del ZIP)
+ * no se atribuye a la petición.
+ */
+public final class ServerTiming {
+
+    public enum Phase {
+        DB("db"), DRIVE_META("drive-meta"), DRIVE_TRANSFER("drive-transfer");
+
+        private final String metric;
+
+        Phase(String metric) {
+            this.metric = metric;
+        }
+    }
+
+    private static final ThreadLocal<long[]> CURRENT = new ThreadLocal<>();
+
+    private ServerTiming() { }
+
+    /** Suma {@code nanos} a la fase indicada si hay una petición midiéndose en este hilo. */
+    public static void add(Phase phase, long nanos) {
+        long[] timings = CURRENT.get();
+        if (timings != null) {
+            timings[phase.ordinal()] += nanos;
+        }
+    }
+
+    static long[] begin() {
+        long[] timings = new long[Phase.values().length];
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /** {@code db;dur=1.8, drive-meta;dur=120.4, drive-transfer;dur=0.0, total;dur=131.2} (milisegundos) */
+    static String header(long[] timings, long totalNanos) {
+        StringBuilder sb = new StringBuilder();
+        for (Phase p : Phase.values()) {
+            sb.append(p.metric).append(";dur=").append(millis(timings[p.ordinal()])).append(", ");
+        }
+        return sb.append("total;dur=").append(millis(totalNanos)).toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+}
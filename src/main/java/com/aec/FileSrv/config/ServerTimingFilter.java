@@ -0,0 +1,91 @@
+package com.aec.FileSrv.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Añade {@code Server-Timing} con el desglose BD / metadatos de Drive / transferencia con Drive.
+ * La cabecera se fija justo antes de empezar el cuerpo, así que en una descarga la transferencia
+ * mide hasta el primer byte de Drive (el resto del envío ocurre con la respuesta ya comprometida).
+ */
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    static final String HEADER = "Server-Timing";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        TimingResponse timed = new TimingResponse(response, ServerTiming.begin(), System.nanoTime());
+        try {
+            chain.doFilter(request, timed);
+        } finally {
+            // Respuestas sin cuerpo (204, 304, sendfile): aún no se había escrito la cabecera
+            timed.emit();
+            ServerTiming.end();
+        }
+    }
+
+    private static final class TimingResponse extends HttpServletResponseWrapper {
+        private final long[] timings;
+        private final long start;
+        private boolean emitted;
+
+        TimingResponse(HttpServletResponse response, long[] timings, long start) {
+            super(response);
+            this.timings = timings;
+            this.start = start;
+        }
+
+        void emit() {
+            if (emitted) return;
+            emitted = true;
+            if (!isCommitted()) {
+                setHeader(HEADER, ServerTiming.header(timings, System.nanoTime() - start));
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            emit();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            emit();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            emit();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            emit();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            emit();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            emit();
+            super.sendRedirect(location);
+        }
+    }
+}
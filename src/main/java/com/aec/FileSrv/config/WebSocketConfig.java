@@ -0,0 +1,23 @@
+package com.aec.FileSrv.config;
+
+import com.aec.FileSrv.service.UploadJobNotifier;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final UploadJobNotifier uploadJobNotifier;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // Bajo /api/files/** para heredar el permitAll de GET (el handshake es un GET)
+        registry.addHandler(uploadJobNotifier, "/api/files/jobs/ws")
+                .setAllowedOrigins(SecurityConfig.ALLOWED_ORIGINS.toArray(String[]::new));
+    }
+}
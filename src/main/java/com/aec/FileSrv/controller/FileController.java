@@ -1,15 +1,24 @@
 package com.aec.FileSrv.controller;
 
 import com.aec.FileSrv.Repository.StoredFileRepository;
+import com.aec.FileSrv.dto.BatchUploadResultDto;
+import com.aec.FileSrv.dto.BulkDeleteResultDto;
 import com.aec.FileSrv.dto.FileInfoDto;
+import com.aec.FileSrv.dto.FileMetaBatchDto;
+import com.aec.FileSrv.dto.ReconcileItemDto;
+import com.aec.FileSrv.dto.UploadJobDto;
 import com.aec.FileSrv.model.StoredFile;
+import com.aec.FileSrv.model.UploadJob;
 import com.aec.FileSrv.service.FileStorageService;
-import com.aec.FileSrv.service.GoogleDriveService;
+import com.aec.FileSrv.service.FileListingService;
+import com.aec.FileSrv.service.UploadJobService;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -22,8 +31,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.time.Instant;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/files")
@@ -32,10 +46,15 @@ public class FileController {
 
         private final FileStorageService storage;
         private final StoredFileRepository repo;
-        private final GoogleDriveService drive;
+        private final FileListingService listing;
+        private final FileResponseWriter responseWriter;
+        private final UploadJobService uploadJobs;
         private final Logger log = LoggerFactory.getLogger(FileController.class);
 
         private static final String GATEWAY_BASE = "https://gateway-production-129e.up.railway.app";
+        private static final String FILE_NAME_HEADER = "X-File-Name";
+        private static final int MAX_META_IDS = 500;
+        private static final int MAX_BULK_DELETE_IDS = 1000;
 
 @PostMapping(path = "/public/{entityId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
 public ResponseEntity<FileInfoDto> uploadPublic(
@@ -65,43 +84,131 @@ public ResponseEntity<FileInfoDto> uploadPublic(
 }
 
 
-        @GetMapping("/{driveId}")
-        public ResponseEntity<InputStreamResource> serveFile(@PathVariable String driveId) throws IOException {
-                StoredFile sf = repo.findByDriveFileId(driveId).orElse(null);
-                InputStream in = storage.loadAsResource(driveId).getInputStream();
-                MediaType type = (sf != null && sf.getFileType() != null)
-                                ? MediaType.parseMediaType(sf.getFileType())
-                                : MediaType.APPLICATION_OCTET_STREAM;
-                String filename = (sf != null) ? sf.getFilename() : driveId;
+        /**
+         * Subida asíncrona: responde 202 en cuanto el archivo está en disco local; un worker lo
+         * sube a Drive después. El estado se consulta en Location o por WebSocket en /api/files/jobs/ws.
+         */
+        @PostMapping(path = "/public/{entityId}/async", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+        public ResponseEntity<UploadJobDto> uploadPublicAsync(
+                        @PathVariable Long entityId,
+                        @RequestParam("type") String type,
+                        @RequestParam(value = "uploader", required = false) String uploader,
+                        @RequestParam("file") MultipartFile file) throws IOException {
+
+                boolean isProduct = "product".equalsIgnoreCase(type);
+                UploadJob job = uploadJobs.submit(file, uploader, entityId, isProduct);
+                return ResponseEntity.accepted()
+                                .location(URI.create("/api/files/jobs/" + job.getId()))
+                                .body(uploadJobs.toDto(job));
+        }
+
+        @GetMapping("/jobs/{jobId}")
+        public ResponseEntity<UploadJobDto> uploadJobStatus(@PathVariable String jobId) {
+                return uploadJobs.find(jobId)
+                                .map(uploadJobs::toDto)
+                                .map(ResponseEntity::ok)
+                                .orElse(ResponseEntity.notFound().build());
+        }
+
+        /**
+         * Varios archivos (partes "files") de un mismo producto u orden en una petición.
+         * Responde 200 con el resultado de cada archivo aunque alguno haya fallado.
+         */
+        @PostMapping(path = "/public/{entityId}/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+        public ResponseEntity<List<BatchUploadResultDto>> uploadPublicBatch(
+                        @PathVariable Long entityId,
+                        @RequestParam("type") String type,
+                        @RequestParam(value = "uploader", required = false) String uploader,
+                        @RequestParam("files") List<MultipartFile> files) throws IOException {
+
+                boolean isProduct = "product".equalsIgnoreCase(type);
+                return ResponseEntity.ok(storage.storeBatch(files, uploader, entityId, isProduct));
+        }
 
-                return ResponseEntity.ok()
-                                .contentType(type)
-                                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                                .body(new InputStreamResource(in));
+        /**
+         * Subida en streaming: el cuerpo crudo (no multipart) se envía a Drive mientras llega,
+         * sin temporales. Nombre en la cabecera X-File-Name (URL-encoded), tipo en Content-Type.
+         */
+        @PostMapping(path = "/public/{entityId}/stream", consumes = "!" + MediaType.MULTIPART_FORM_DATA_VALUE)
+        public ResponseEntity<FileInfoDto> uploadPublicStream(
+                        @PathVariable Long entityId,
+                        @RequestParam("type") String type,
+                        @RequestParam(value = "uploader", required = false) String uploader,
+                        @RequestHeader(FILE_NAME_HEADER) String encodedName,
+                        HttpServletRequest request) throws IOException {
+
+                long size = request.getContentLengthLong();
+                if (size < 0) {
+                        // Sin Content-Length no se puede fijar X-Upload-Content-Length en Drive
+                        return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED).build();
+                }
+                if (size == 0) {
+                        return ResponseEntity.badRequest().build();
+                }
+                String filename = URLDecoder.decode(encodedName, StandardCharsets.UTF_8);
+                String mime = request.getContentType();
+
+                try (InputStream in = request.getInputStream()) {
+                        boolean isProduct = "product".equalsIgnoreCase(type);
+                        FileInfoDto saved = isProduct
+                                        ? storage.storeProductStream(in, size, filename, mime, uploader, entityId)
+                                        : storage.storeReceiptStream(in, size, filename, mime, uploader, entityId);
+                        return ResponseEntity.ok(saved);
+                } catch (Exception ex) {
+                        log.error("ERROR en subida streaming para entityId=" + entityId, ex);
+                        throw ex;
+                }
+        }
+
+        @GetMapping("/{driveId}")
+        public void serveFile(
+                        @PathVariable String driveId,
+                        HttpServletRequest request,
+                        HttpServletResponse response) throws IOException {
+                // Una sola resolución de metadatos por petición (y normalmente sin tocar la BD)
+                StoredFile sf = storage.findByDriveId(driveId)
+                                .orElseThrow(() -> new NoSuchFileException("No existe en DB: " + driveId));
+                responseWriter.write(sf, request, response);
         }
 
         @GetMapping("/{productId}/{driveId}")
-        public ResponseEntity<InputStreamResource> serveFileByProduct(
+        public void serveFileByProduct(
                         @PathVariable Long productId,
-                        @PathVariable String driveId) throws IOException {
-                return serveFile(driveId);
+                        @PathVariable String driveId,
+                        HttpServletRequest request,
+                        HttpServletResponse response) throws IOException {
+                serveFile(driveId, request, response);
         }
 
+        /**
+         * Listado paginado desde BD: GET /api/files/list/{product|receipt|all}?size=100&cursor=...
+         * con filtros opcionales productId, orderId, uploader, from y to (ISO-8601, [from, to)).
+         * Responde {"items":[...],"nextCursor":"..."}; nextCursor es null en la última página.
+         */
         @GetMapping(path = "/list/{type}")
-        public List<FileInfoDto> listFiles(
+        public void listFiles(
                         @PathVariable String type,
-                        @RequestParam(defaultValue = "100") int size) throws IOException {
-
-                boolean isProduct = "product".equalsIgnoreCase(type);
+                        @RequestParam(required = false) Long productId,
+                        @RequestParam(required = false) Long orderId,
+                        @RequestParam(required = false) String uploader,
+                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                        @RequestParam(required = false) String cursor,
+                        @RequestParam(defaultValue = "" + FileListingService.DEFAULT_PAGE_SIZE) int size,
+                        HttpServletResponse response) throws IOException {
 
-                return drive.listFiles(isProduct, size)
-                                .stream()
-                                .map(f -> FileInfoDto.builder()
-                                                .filename(f.getName())
-                                                .driveFileId(f.getId())
-                                                .downloadUri("https://drive.google.com/file/d/" + f.getId() + "/view")
-                                                .build())
-                                .collect(Collectors.toList());
+                FileListingService.Query query;
+                try {
+                        query = new FileListingService.Query(FileListingService.parseType(type),
+                                        productId, orderId, uploader, from, to,
+                                        cursor != null ? FileListingService.Cursor.decode(cursor) : null, size);
+                } catch (IllegalArgumentException e) {
+                        response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+                        return;
+                }
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                listing.writePage(query, response.getOutputStream());
         }
 
         @DeleteMapping("/{driveId}")
@@ -111,19 +218,83 @@ public ResponseEntity<FileInfoDto> uploadPublic(
                 return ResponseEntity.noContent().build();
         }
 
+        /**
+         * Borrado en lote con estado por archivo (200 aunque alguno falle, como la subida por lotes):
+         * POST /api/files/bulk-delete con ["driveId1", "driveId2", ...]
+         */
+        @PostMapping("/bulk-delete")
+        @PreAuthorize("hasAnyAuthority('ROL_COLABORADOR','ROL_ADMIN')")
+        public ResponseEntity<BulkDeleteResultDto> bulkDelete(@RequestBody Set<String> driveIds) throws IOException {
+                if (driveIds.isEmpty() || driveIds.size() > MAX_BULK_DELETE_IDS) {
+                        return ResponseEntity.badRequest().build();
+                }
+                return ResponseEntity.ok(storage.deleteFiles(driveIds));
+        }
+
+        @DeleteMapping("/product/{productId}")
+        @PreAuthorize("hasAnyAuthority('ROL_COLABORADOR','ROL_ADMIN')")
+        public BulkDeleteResultDto deleteProductFiles(@PathVariable Long productId) throws IOException {
+                return storage.deleteProductFiles(productId);
+        }
+
+        @DeleteMapping("/order/{orderId}")
+        @PreAuthorize("hasAnyAuthority('ROL_COLABORADOR','ROL_ADMIN')")
+        public BulkDeleteResultDto deleteOrderFiles(@PathVariable Long orderId) throws IOException {
+                return storage.deleteOrderFiles(orderId);
+        }
+
+        /** Tamaño y md5 de cada archivo en BD frente a Drive (metadatos pedidos en batches) */
+        @GetMapping("/reconcile/product/{productId}")
+        @PreAuthorize("hasAnyAuthority('ROL_COLABORADOR','ROL_ADMIN')")
+        public List<ReconcileItemDto> reconcileProduct(@PathVariable Long productId) throws IOException {
+                return storage.reconcileProduct(productId);
+        }
+
+        @GetMapping("/reconcile/order/{orderId}")
+        @PreAuthorize("hasAnyAuthority('ROL_COLABORADOR','ROL_ADMIN')")
+        public List<ReconcileItemDto> reconcileOrder(@PathVariable Long orderId) throws IOException {
+                return storage.reconcileOrder(orderId);
+        }
+
         @GetMapping("/product/{productId}/zip")
         public void zipProductFiles(
                         @PathVariable Long productId,
+                        HttpServletRequest request,
                         HttpServletResponse response) throws IOException {
 
+                String disposition = "attachment; filename=\"producto-" + productId + ".zip\"";
+                var artifact = storage.productZipArtifact(productId);
+                if (artifact.isPresent()) {
+                        // ZIP ya materializado: Content-Length, Range y ETag como cualquier archivo
+                        var a = artifact.get();
+                        responseWriter.writeLocalFile(a.path(), a.size(), MediaType.parseMediaType("application/zip"),
+                                        a.etag(), a.builtAtMillis(), disposition, request, response);
+                        return;
+                }
+
                 response.setContentType("application/zip");
-                response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
-                                "attachment; filename=\"producto-" + productId + ".zip\"");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition);
 
                 // Delegar en un servicio que lea en Drive la carpeta productos/{productId}
                 storage.streamProductZipFromDrive(productId, response.getOutputStream());
         }
 
+        /**
+         * Metadatos de muchos productos/órdenes en una llamada:
+         * GET /api/files/meta?productIds=1,2,3&orderIds=7
+         */
+        @GetMapping("/meta")
+        public ResponseEntity<FileMetaBatchDto> getMetaBatch(
+                        @RequestParam(value = "productIds", required = false) Set<Long> productIds,
+                        @RequestParam(value = "orderIds", required = false) Set<Long> orderIds) {
+                Set<Long> products = productIds != null ? productIds : Set.of();
+                Set<Long> orders = orderIds != null ? orderIds : Set.of();
+                if (products.size() + orders.size() > MAX_META_IDS) {
+                        return ResponseEntity.badRequest().build();
+                }
+                return ResponseEntity.ok(storage.metadataFor(products, orders));
+        }
+
         @GetMapping("/meta/product/{productId}")
         public List<FileInfoDto> getMetaByProduct(@PathVariable Long productId) {
                 // Devuelve todos los archivos asociados a ese producto con su fileType y
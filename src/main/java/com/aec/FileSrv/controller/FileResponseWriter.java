@@ -0,0 +1,321 @@
+package com.aec.FileSrv.controller;
+
+import com.aec.FileSrv.config.FileServiceProperties;
+import com.aec.FileSrv.model.StoredFile;
+import com.aec.FileSrv.service.FileStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Escribe el contenido de un {@link StoredFile} (o de un fichero local, como un ZIP materializado)
+ * en la respuesta, respetando la cabecera Range.
+ * Cada rango se traduce en un GET ranged a Drive, así un seek no descarga el archivo entero.
+ * Las peticiones condicionales (If-None-Match / If-Modified-Since) se resuelven sólo con los
+ * metadatos de BD, sin abrir ningún stream de Drive.
+ * Si el contenido está en la caché de disco se envía desde ahí, con sendfile de Tomcat cuando
+ * el conector lo soporta ({@code FileChannel.transferTo} de fichero a socket).
+ */
+@Component
+@RequiredArgsConstructor
+public class FileResponseWriter {
+
+    private final FileStorageService storage;
+    private final FileServiceProperties props;
+
+    // Atributos de petición con los que Tomcat envía un fichero por sendfile al terminar el servlet
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /** Rango ya resuelto contra la longitud del archivo; ambos extremos inclusive */
+    record ByteRange(long start, long end) {
+        long length() { return end - start + 1; }
+    }
+
+    /** Lo necesario para responder: validadores, tamaño y cómo obtener los bytes */
+    private interface Content {
+        /** Copia local (caché o artefacto), si la hay; se evalúa sólo cuando hay que enviar bytes */
+        Optional<Path> local();
+        InputStream open() throws IOException;
+        InputStream openRange(long start, long end) throws IOException;
+    }
+
+    private record Representation(long length, MediaType type, String etag, long lastModified,
+                                  String disposition, String cacheControl) { }
+
+    public void write(StoredFile sf, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MediaType type = sf.getFileType() != null
+                ? MediaType.parseMediaType(sf.getFileType())
+                : MediaType.APPLICATION_OCTET_STREAM;
+        Representation rep = new Representation(
+                sf.getSize(),
+                type,
+                etag(sf),
+                sf.getUploadedAt() != null ? sf.getUploadedAt().toEpochMilli() : -1,
+                inlineDisposition(sf.getFilename()),
+                props.cacheControlFor(type));
+        write(rep, new Content() {
+            @Override public Optional<Path> local() { return storage.cachedContent(sf); }
+            @Override public InputStream open() throws IOException { return storage.openContent(sf); }
+            @Override public InputStream openRange(long start, long end) throws IOException {
+                return storage.openRange(sf, start, end);
+            }
+        }, request, response);
+    }
+
+    /** Sirve un fichero local (p. ej. un ZIP materializado) con los mismos validadores y rangos. */
+    public void writeLocalFile(Path file, long length, MediaType type, String etag, long lastModified,
+                               String disposition, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        Representation rep = new Representation(length, type, etag, lastModified, disposition, props.cacheControlFor(type));
+        write(rep, new Content() {
+            @Override public Optional<Path> local() { return Optional.of(file); }
+            @Override public InputStream open() { throw new IllegalStateException("Contenido sólo local"); }
+            @Override public InputStream openRange(long start, long end) { return open(); }
+        }, request, response);
+    }
+
+    private void write(Representation rep, Content content, HttpServletRequest request,
+                       HttpServletResponse response) throws IOException {
+        long length = rep.length();
+        MediaType type = rep.type();
+        boolean head = "HEAD".equals(request.getMethod());
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, rep.cacheControl());
+        // Fija ETag/Last-Modified y, si el cliente ya tiene esta versión, deja la respuesta en 304
+        if (new ServletWebRequest(request, response).checkNotModified(rep.etag(), rep.lastModified())) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, rep.disposition());
+
+        String rangeHeader = ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), rep.etag(), rep.lastModified())
+                ? request.getHeader(HttpHeaders.RANGE)
+                : null;
+        List<ByteRange> ranges = resolveRanges(rangeHeader, length);
+        if (ranges == null) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+
+        Optional<Path> local = head ? Optional.empty() : content.local();
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(type.toString());
+            response.setContentLengthLong(length);
+            if (head) {
+                return;
+            }
+            if (local.isPresent()) {
+                sendLocal(local.get(), 0, length - 1, request, response);
+            } else {
+                try (InputStream in = content.open()) {
+                    in.transferTo(response.getOutputStream());
+                }
+            }
+            return;
+        }
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        if (ranges.size() == 1) {
+            ByteRange r = ranges.get(0);
+            response.setContentType(type.toString());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(r, length));
+            response.setContentLengthLong(r.length());
+            if (head) {
+                return;
+            }
+            if (local.isPresent()) {
+                sendLocal(local.get(), r.start(), r.end(), request, response);
+            } else {
+                try (InputStream in = content.openRange(r.start(), r.end())) {
+                    in.transferTo(response.getOutputStream());
+                }
+            }
+            return;
+        }
+
+        writeMultipart(content, local, type, ranges, length, head, response);
+    }
+
+    /** Envía [start, end] de un fichero local: sendfile si Tomcat lo admite, si no transferTo sobre el stream */
+    private static void sendLocal(Path file, long start, long end, HttpServletRequest request,
+                                  HttpServletResponse response) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        copyLocal(file, start, end, response.getOutputStream());
+    }
+
+    private static void copyLocal(Path file, long start, long end, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                long n = channel.transferTo(position, remaining, target);
+                if (n <= 0) {
+                    throw new EOFException("Copia local truncada: " + file);
+                }
+                position += n;
+                remaining -= n;
+            }
+        }
+    }
+
+    private void writeMultipart(Content content, Optional<Path> local, MediaType type, List<ByteRange> ranges,
+                                long length, boolean head, HttpServletResponse response) throws IOException {
+        String boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long total = 0;
+        for (ByteRange r : ranges) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + type + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(r, length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            total += header.length + r.length();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        total += closing.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(total);
+        if (head) {
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange r = ranges.get(i);
+            out.write(partHeaders.get(i));
+            if (local.isPresent()) {
+                copyLocal(local.get(), r.start(), r.end(), out);
+            } else {
+                try (InputStream in = content.openRange(r.start(), r.end())) {
+                    in.transferTo(out);
+                }
+            }
+        }
+        out.write(closing);
+    }
+
+    /**
+     * Lista vacía = sin Range (o Range inválido, que se ignora según RFC 9110);
+     * {@code null} = ningún rango satisfacible (416), o rangos que suman más que el archivo.
+     * Los rangos solapados o contiguos se fusionan y se devuelven en orden, así una petición
+     * como {@code bytes=0-,0-,0-} no multiplica el archivo ni las lecturas a Drive.
+     */
+    static List<ByteRange> resolveRanges(String header, long length) {
+        if (header == null || header.isBlank()) {
+            return List.of();
+        }
+        List<HttpRange> parsed;
+        try {
+            parsed = HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+        List<ByteRange> satisfiable = new ArrayList<>(parsed.size());
+        long requested = 0;
+        for (HttpRange r : parsed) {
+            try {
+                ByteRange range = new ByteRange(r.getRangeStart(length), r.getRangeEnd(length));
+                // getRangeStart no valida que el inicio caiga dentro del archivo
+                if (range.start() >= length) {
+                    continue;
+                }
+                satisfiable.add(range);
+                requested += range.length();
+            } catch (IllegalArgumentException unsatisfiable) {
+                // se descarta este rango; si no queda ninguno se responde 416
+            }
+        }
+        // Mismo criterio que HttpRange.toResourceRegions: pedir más bytes de los que hay es abuso
+        if (satisfiable.isEmpty() || requested > length) {
+            return null;
+        }
+        satisfiable.sort(Comparator.comparingLong(ByteRange::start));
+        List<ByteRange> merged = new ArrayList<>(satisfiable.size());
+        ByteRange current = satisfiable.get(0);
+        for (ByteRange next : satisfiable.subList(1, satisfiable.size())) {
+            if (next.start() <= current.end() + 1) {
+                current = new ByteRange(current.start(), Math.max(current.end(), next.end()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    /** {@code inline} con {@code filename*} (RFC 5987) para nombres no ASCII o con comillas */
+    static String inlineDisposition(String filename) {
+        return ContentDisposition.inline().filename(filename, StandardCharsets.UTF_8).build().toString();
+    }
+
+    /**
+     * ETag fuerte. Incluye uploadedAt y size porque una re-subida con el mismo nombre
+     * actualiza el archivo de Drive en sitio y conserva su driveFileId.
+     */
+    static String etag(StoredFile sf) {
+        long version = sf.getUploadedAt() != null ? sf.getUploadedAt().toEpochMilli() : 0;
+        return "\"" + sf.getDriveFileId() + "-" + Long.toHexString(version) + "-" + Long.toHexString(sf.getSize()) + "\"";
+    }
+
+    /** Sin If-Range, o con un validador que coincide, se atiende el Range; si no, se envía el archivo completo */
+    static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toInstant().toEpochMilli();
+            return lastModified >= 0 && lastModified / 1000 == date / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    static String contentRange(ByteRange r, long length) {
+        return "bytes " + r.start() + "-" + r.end() + "/" + length;
+    }
+}
@@ -0,0 +1,179 @@
+package com.aec.FileSrv.controller;
+
+import com.aec.FileSrv.config.FileServiceProperties;
+import com.aec.FileSrv.controller.FileResponseWriter.ByteRange;
+import com.aec.FileSrv.model.StoredFile;
+import com.aec.FileSrv.service.FileStorageService;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+/**
+ * Descargas y ZIP con WebFlux: el cuerpo es un {@code Flux<DataBuffer>} con backpressure, así un
+ * cliente lento no retiene un hilo mientras recibe el archivo. Las lecturas bloqueantes (JPA y el
+ * stream de Drive) se hacen en {@code boundedElastic} sólo cuando el cliente pide más datos;
+ * las copias locales (caché, ZIP materializado) se leen con {@link AsynchronousFileChannel}.
+ *
+ * Mismos validadores que {@link FileResponseWriter}; admite un único rango (varios se responden con 200).
+ */
+public class ReactiveFileHandler {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /** Cómo obtener [start, end] del contenido remoto */
+    @FunctionalInterface
+    private interface RangeSource {
+        InputStream open(long start, long end) throws IOException;
+    }
+
+    private record Representation(long length, MediaType type, String etag, Instant lastModified,
+                                  String disposition, Optional<Path> local, RangeSource full, RangeSource range) { }
+
+    private final FileStorageService storage;
+    private final FileServiceProperties props;
+    private final DataBufferFactory buffers = DefaultDataBufferFactory.sharedInstance;
+
+    public ReactiveFileHandler(FileStorageService storage, FileServiceProperties props) {
+        this.storage = storage;
+        this.props = props;
+    }
+
+    /** Rutas relativas al servlet (/api/files/rx) */
+    public RouterFunction<ServerResponse> routes() {
+        return RouterFunctions.route()
+                .GET("/product/{productId}/zip", this::zip)
+                .GET("/{driveId}", this::download)
+                .build();
+    }
+
+    private Mono<ServerResponse> download(ServerRequest request) {
+        String driveId = request.pathVariable("driveId");
+        return blocking(() -> storage.findByDriveId(driveId))
+                .flatMap(sf -> sf.map(f -> serve(request, representation(f)))
+                        .orElseGet(() -> ServerResponse.notFound().build()));
+    }
+
+    private Representation representation(StoredFile sf) {
+        MediaType type = sf.getFileType() != null
+                ? MediaType.parseMediaType(sf.getFileType())
+                : MediaType.APPLICATION_OCTET_STREAM;
+        return new Representation(sf.getSize(), type, FileResponseWriter.etag(sf), sf.getUploadedAt(),
+                FileResponseWriter.inlineDisposition(sf.getFilename()),
+                storage.cachedContent(sf),
+                (start, end) -> storage.openContent(sf),
+                (start, end) -> storage.openRange(sf, start, end));
+    }
+
+    private Mono<ServerResponse> zip(ServerRequest request) {
+        Long productId = Long.valueOf(request.pathVariable("productId"));
+        String disposition = "attachment; filename=\"producto-" + productId + ".zip\"";
+        MediaType zip = MediaType.parseMediaType("application/zip");
+        return blocking(() -> storage.productZipArtifact(productId)).flatMap(artifact -> {
+            if (artifact.isPresent()) {
+                var a = artifact.get();
+                return serve(request, new Representation(a.size(), zip, a.etag(), Instant.ofEpochMilli(a.builtAtMillis()),
+                        disposition, Optional.of(a.path()), null, null));
+            }
+            // Sin artefacto: el ZIP se escribe en un OutputStream que sólo avanza cuando el cliente pide datos
+            Flux<DataBuffer> body = Flux.from(DataBufferUtils.outputStreamPublisher(out -> {
+                try {
+                    storage.streamProductZipFromDrive(productId, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, buffers, task -> Schedulers.boundedElastic().schedule(task), CHUNK_SIZE));
+            return ServerResponse.ok()
+                    .contentType(zip)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, disposition)
+                    .body(BodyInserters.fromDataBuffers(body));
+        });
+    }
+
+    private Mono<ServerResponse> serve(ServerRequest request, Representation rep) {
+        // checkNotModified emite el 304 o nada; sin él se sirve la representación completa o por rangos
+        Mono<ServerResponse> notModified = rep.lastModified() != null
+                ? request.checkNotModified(rep.lastModified(), rep.etag())
+                : request.checkNotModified(rep.etag());
+        return notModified.switchIfEmpty(Mono.defer(() -> fullResponse(request, rep)));
+    }
+
+    private Mono<ServerResponse> fullResponse(ServerRequest request, Representation rep) {
+        long lastModified = rep.lastModified() != null ? rep.lastModified().toEpochMilli() : -1;
+        String rangeHeader = FileResponseWriter.ifRangeMatches(
+                request.headers().firstHeader(HttpHeaders.IF_RANGE), rep.etag(), lastModified)
+                ? request.headers().firstHeader(HttpHeaders.RANGE)
+                : null;
+        List<ByteRange> ranges = FileResponseWriter.resolveRanges(rangeHeader, rep.length());
+        if (ranges == null) {
+            return ServerResponse.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + rep.length())
+                    .build();
+        }
+
+        ServerResponse.BodyBuilder response;
+        Flux<DataBuffer> body;
+        if (ranges.size() == 1) {
+            ByteRange r = ranges.get(0);
+            response = ServerResponse.status(HttpStatus.PARTIAL_CONTENT)
+                    .header(HttpHeaders.CONTENT_RANGE, FileResponseWriter.contentRange(r, rep.length()))
+                    .contentLength(r.length());
+            body = rep.local().isPresent()
+                    ? readLocal(rep.local().get(), r.start(), r.length())
+                    : readRemote(() -> rep.range().open(r.start(), r.end()));
+        } else {
+            response = ServerResponse.ok().contentLength(rep.length());
+            body = rep.local().isPresent()
+                    ? readLocal(rep.local().get(), 0, rep.length())
+                    : readRemote(() -> rep.full().open(0, rep.length() - 1));
+        }
+        if (rep.lastModified() != null) {
+            response.lastModified(rep.lastModified());
+        }
+        return response
+                .eTag(rep.etag())
+                .contentType(rep.type())
+                .header(HttpHeaders.CACHE_CONTROL, props.cacheControlFor(rep.type()))
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_DISPOSITION, rep.disposition())
+                .body(BodyInserters.fromDataBuffers(body));
+    }
+
+    private Flux<DataBuffer> readLocal(Path file, long position, long length) {
+        Flux<DataBuffer> all = DataBufferUtils.readAsynchronousFileChannel(
+                () -> AsynchronousFileChannel.open(file, StandardOpenOption.READ), position, buffers, CHUNK_SIZE);
+        return DataBufferUtils.takeUntilByteCount(all, length);
+    }
+
+    /** Cada chunk se lee en boundedElastic cuando llega demanda; entre lecturas no se ocupa ningún hilo */
+    private Flux<DataBuffer> readRemote(Callable<InputStream> source) {
+        return DataBufferUtils.readInputStream(source, buffers, CHUNK_SIZE)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -0,0 +1,341 @@
+package com.aec.FileSrv.drive;
+
+import com.aec.FileSrv.config.FileServiceProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Caché read-through en disco local del contenido de Drive, con presupuesto de bytes y expulsión LRU.
+ *
+ * Cada entrada es {@code <driveFileId>.<versión>}: la versión (uploadedAt) cambia cuando el archivo
+ * se reemplaza en sitio, así otra réplica nunca sirve contenido viejo aunque no reciba la invalidación.
+ * Las escrituras van a un temporal y se publican con un rename atómico.
+ */
+@Component
+public class DriveContentCache {
+
+    private static final String TMP_SUFFIX = ".tmp";
+    /** Tiempo que se conserva un archivo expulsado por si aún se está enviando con sendfile */
+    private static final long GRACE_MS = 60_000;
+
+    private record Entry(String version, Path path, long size) { }
+    private record Evicted(String driveFileId, Path path, long evictedAtMillis) { }
+
+    private final Logger log = LoggerFactory.getLogger(DriveContentCache.class);
+    private final boolean enabled;
+    private final Path dir;
+    private final long maxBytes;
+    private final long maxFileBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Deque<Evicted> graveyard = new ArrayDeque<>();
+    private long currentBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    public DriveContentCache(FileServiceProperties props, MeterRegistry registry) throws IOException {
+        this.enabled = props.isContentCacheEnabled();
+        this.dir = Path.of(props.getContentCacheDir()).toAbsolutePath();
+        this.maxBytes = props.getContentCacheMaxSize().toBytes();
+        this.maxFileBytes = Math.min(props.getContentCacheMaxFileSize().toBytes(), maxBytes);
+
+        this.hits = Counter.builder("drive.content.cache.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("drive.content.cache.requests").tag("result", "miss").register(registry);
+        this.evictions = Counter.builder("drive.content.cache.evictions").register(registry);
+        FunctionCounter.builder("drive.content.cache.bytes.saved", bytesSaved, AtomicLong::get)
+                .baseUnit("bytes").register(registry);
+        Gauge.builder("drive.content.cache.size", this, DriveContentCache::currentBytes)
+                .baseUnit("bytes").register(registry);
+        Gauge.builder("drive.content.cache.hit.ratio", this, DriveContentCache::hitRatio).register(registry);
+
+        if (enabled) {
+            Files.createDirectories(dir);
+            rebuildIndex();
+        }
+    }
+
+    /** Archivo local con el contenido de esa versión, si está en caché. */
+    public Optional<Path> lookup(String driveFileId, String version, long size) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        lock.lock();
+        try {
+            Entry e = entries.get(driveFileId);
+            if (e != null && e.version().equals(version)) {
+                hits.increment();
+                bytesSaved.addAndGet(size);
+                return Optional.of(e.path());
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Envuelve el stream de Drive: lo que lee el cliente se copia a un temporal y, si se
+     * consume completo con el tamaño esperado, se publica en la caché al cerrar.
+     */
+    public InputStream readThrough(String driveFileId, String version, long size, InputStream source) {
+        if (!enabled || size <= 0 || size > maxFileBytes) {
+            return source;
+        }
+        Path tmp = dir.resolve(UUID.randomUUID() + TMP_SUFFIX);
+        OutputStream out;
+        try {
+            out = Files.newOutputStream(tmp);
+        } catch (IOException e) {
+            log.warn("No se pudo crear temporal de caché para {}: {}", driveFileId, e.getMessage());
+            return source;
+        }
+        return new CachingInputStream(source, out, tmp, driveFileId, version, size);
+    }
+
+    public void invalidate(String driveFileId) {
+        if (!enabled || driveFileId == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            Entry e = entries.remove(driveFileId);
+            if (e != null) {
+                currentBytes -= e.size();
+                graveyard.add(new Evicted(driveFileId, e.path(), System.currentTimeMillis()));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long currentBytes() {
+        lock.lock();
+        try {
+            return currentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double hitRatio() {
+        double h = hits.count();
+        double total = h + misses.count();
+        return total == 0 ? 0 : h / total;
+    }
+
+    /** Borra del disco los archivos expulsados cuyo periodo de gracia ya pasó. */
+    @Scheduled(fixedDelay = 30_000)
+    public void purgeEvicted() {
+        long cutoff = System.currentTimeMillis() - GRACE_MS;
+        while (true) {
+            Evicted ev;
+            lock.lock();
+            try {
+                ev = graveyard.peek();
+                if (ev == null || ev.evictedAtMillis() > cutoff) {
+                    return;
+                }
+                graveyard.poll();
+                Entry live = entries.get(ev.driveFileId());
+                if (live != null && live.path().equals(ev.path())) {
+                    continue; // la misma versión se volvió a publicar después de expulsarla
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                Files.deleteIfExists(ev.path());
+            } catch (IOException e) {
+                log.warn("No se pudo borrar {} de la caché: {}", ev.path(), e.getMessage());
+            }
+        }
+    }
+
+    private void publish(Path tmp, String driveFileId, String version, long size) throws IOException {
+        Path target = dir.resolve(driveFileId + "." + version);
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        lock.lock();
+        try {
+            Entry previous = entries.put(driveFileId, new Entry(version, target, size));
+            if (previous != null) {
+                currentBytes -= previous.size();
+                if (!previous.path().equals(target)) {
+                    graveyard.add(new Evicted(driveFileId, previous.path(), System.currentTimeMillis()));
+                }
+            }
+            currentBytes += size;
+            evictToBudget();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Debe llamarse con el lock tomado
+    private void evictToBudget() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> next = it.next();
+            Entry e = next.getValue();
+            it.remove();
+            currentBytes -= e.size();
+            graveyard.add(new Evicted(next.getKey(), e.path(), System.currentTimeMillis()));
+            evictions.increment();
+        }
+    }
+
+    /** Reconstruye el índice al arrancar, ordenando por última modificación como aproximación al LRU. */
+    private void rebuildIndex() throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.filter(Files::isRegularFile).toList();
+        }
+        record Found(Path path, FileTime modified, long size) { }
+        List<Found> found = new ArrayList<>();
+        for (Path p : files) {
+            String name = p.getFileName().toString();
+            if (name.endsWith(TMP_SUFFIX) || name.lastIndexOf('.') <= 0) {
+                Files.deleteIfExists(p);
+                continue;
+            }
+            found.add(new Found(p, Files.getLastModifiedTime(p), Files.size(p)));
+        }
+        found.sort(Comparator.comparing(Found::modified));
+
+        lock.lock();
+        try {
+            for (Found f : found) {
+                String name = f.path().getFileName().toString();
+                int dot = name.lastIndexOf('.');
+                Entry previous = entries.put(name.substring(0, dot), new Entry(name.substring(dot + 1), f.path(), f.size()));
+                if (previous != null) {
+                    currentBytes -= previous.size();
+                    Files.deleteIfExists(previous.path());
+                }
+                currentBytes += f.size();
+            }
+            evictToBudget();
+        } finally {
+            lock.unlock();
+        }
+        log.info("Caché de contenido en {}: {} archivos, {} bytes", dir, entries.size(), currentBytes);
+    }
+
+    private final class CachingInputStream extends FilterInputStream {
+        private final OutputStream out;
+        private final Path tmp;
+        private final String driveFileId;
+        private final String version;
+        private final long expected;
+        private long copied;
+        private boolean failed;
+        private boolean eof;
+        private boolean closed;
+
+        CachingInputStream(InputStream in, OutputStream out, Path tmp, String driveFileId, String version, long expected) {
+            super(in);
+            this.out = out;
+            this.tmp = tmp;
+            this.driveFileId = driveFileId;
+            this.version = version;
+            this.expected = expected;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                eof = true;
+            } else {
+                copy(new byte[] {(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n < 0) {
+                eof = true;
+            } else {
+                copy(buf, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Saltar bytes dejaría el temporal incompleto: no se cachea
+            failed = true;
+            return super.skip(n);
+        }
+
+        private void copy(byte[] buf, int off, int len) {
+            if (failed) return;
+            try {
+                out.write(buf, off, len);
+                copied += len;
+            } catch (IOException e) {
+                failed = true;
+                log.warn("Fallo escribiendo caché de {}: {}", driveFileId, e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                try {
+                    out.close();
+                    if (!failed && eof && copied == expected) {
+                        publish(tmp, driveFileId, version, copied);
+                    }
+                } catch (IOException e) {
+                    log.warn("No se pudo publicar {} en la caché: {}", driveFileId, e.getMessage());
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+        }
+    }
+}
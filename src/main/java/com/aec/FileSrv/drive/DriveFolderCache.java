@@ -0,0 +1,165 @@
+package com.aec.FileSrv.drive;
+
+import com.aec.FileSrv.config.DriveProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caché acotada (LRU + TTL) de IDs de carpetas de Drive por (parentId, nombre).
+ * Los fallos concurrentes para la misma clave se agrupan en una sola búsqueda/creación,
+ * lo que además evita crear carpetas duplicadas cuando dos subidas llegan a la vez.
+ */
+@Component
+public class DriveFolderCache {
+
+    @FunctionalInterface
+    public interface FolderLoader {
+        String load() throws IOException;
+    }
+
+    private record Entry(String folderId, long expiresAtNanos) { }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter evictions;
+
+    public DriveFolderCache(DriveProperties props, MeterRegistry registry) {
+        this.maxEntries = Math.max(1, props.getFolderCacheMaxEntries());
+        this.ttlNanos = props.getFolderCacheTtl().toNanos();
+        this.hits = Counter.builder("drive.folder.cache.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("drive.folder.cache.requests").tag("result", "miss").register(registry);
+        this.coalesced = Counter.builder("drive.folder.cache.requests").tag("result", "coalesced").register(registry);
+        this.evictions = Counter.builder("drive.folder.cache.evictions").register(registry);
+        Gauge.builder("drive.folder.cache.size", this, DriveFolderCache::size).register(registry);
+    }
+
+    /** Devuelve el ID cacheado o ejecuta {@code loader} una sola vez para todos los hilos que esperan la misma clave. */
+    public String get(String name, String parentId, FolderLoader loader) throws IOException {
+        String key = key(name, parentId);
+        String cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+
+        misses.increment();
+        try {
+            // Otro hilo pudo completar la carga entre lookup() y putIfAbsent()
+            String folderId = lookup(key);
+            if (folderId == null) {
+                folderId = loader.load();
+                put(key, folderId);
+            }
+            mine.complete(folderId);
+            return folderId;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /** Olvida cualquier ruta que apunte a {@code folderId} (p. ej. la carpeta se borró en Drive). */
+    public void invalidateFolderId(String folderId) {
+        if (folderId == null) return;
+        lock.lock();
+        try {
+            entries.values().removeIf(e -> e.folderId().equals(folderId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String lookup(String key) {
+        lock.lock();
+        try {
+            Entry e = entries.get(key);
+            if (e == null) return null;
+            if (System.nanoTime() - e.expiresAtNanos() >= 0) {
+                entries.remove(key);
+                return null;
+            }
+            return e.folderId();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(String key, String folderId) {
+        lock.lock();
+        try {
+            entries.put(key, new Entry(folderId, System.nanoTime() + ttlNanos));
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static String await(CompletableFuture<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido esperando carpeta de Drive");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IOException("Error resolviendo carpeta: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static String key(String name, String parentId) {
+        return (parentId == null ? "" : parentId) + "/" + name;
+    }
+}
@@ -0,0 +1,325 @@
+package com.aec.FileSrv.drive;
+
+import com.aec.FileSrv.config.DriveProperties;
+import com.aec.FileSrv.drive.DriveMetrics.DriveCall;
+import com.aec.FileSrv.drive.DriveMetrics.Kind;
+import com.google.api.client.http.HttpResponseException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Regulador del lado cliente para todas las llamadas a Drive. Cada llamada pasa por:
+ * <ul>
+ *   <li>un token bucket con el ritmo de la cuota ({@code governor-rate-per-second}) y una ráfaga;</li>
+ *   <li>un límite de concurrencia AIMD: sube de a poco con cada éxito y se reduce a la mitad
+ *       cuando Drive responde 429 o 403 {@code userRateLimitExceeded}/{@code rateLimitExceeded};</li>
+ *   <li>reintentos con backoff exponencial con jitter completo que respetan {@code Retry-After}.</li>
+ * </ul>
+ * Un rechazo por cuota significa que Drive no ejecutó la petición, así que se reintenta sea cual
+ * sea la operación; los 5xx y fallos de red sólo en operaciones idempotentes, porque la petición
+ * pudo haberse aplicado. {@link #callOnce} no reintenta nada: cuerpos que no se pueden reenviar o
+ * llamadores con su propio bucle de reintentos.
+ */
+@Component
+public class DriveGovernor {
+
+    /** Operaciones que se pueden repetir sin duplicar efectos tras un 5xx o un corte de red */
+    private static final Set<String> IDEMPOTENT = Set.of(
+            "files.list", "folders.list", "files.get", "files.get.media", "files.update", "files.delete");
+    private static final Set<String> RATE_LIMIT_REASONS = Set.of("userRateLimitExceeded", "rateLimitExceeded");
+    /** Como mucho una reducción del límite por ventana: una ráfaga de 429 cuenta como una sola señal */
+    private static final long DECREASE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final Logger log = LoggerFactory.getLogger(DriveGovernor.class);
+
+    private final DriveMetrics metrics;
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final long acquireTimeoutNanos;
+    private final double minLimit;
+    private final double maxLimit;
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    /** Instante teórico en que sale el siguiente token (GCRA); un Retry-After lo empuja hacia delante */
+    private long nextTokenNanos;
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Timer waits;
+    private final Counter rejectedRate;
+    private final Counter rejectedConcurrency;
+
+    public DriveGovernor(DriveProperties props, DriveMetrics metrics, MeterRegistry registry) {
+        this.metrics = metrics;
+        this.registry = registry;
+        this.enabled = props.isGovernorEnabled();
+        this.intervalNanos = (long) (1_000_000_000L / Math.max(0.001, props.getGovernorRatePerSecond()));
+        this.burstNanos = intervalNanos * Math.max(1, props.getGovernorBurst());
+        this.acquireTimeoutNanos = props.getGovernorAcquireTimeout().toNanos();
+        this.minLimit = Math.max(1, props.getGovernorMinLimit());
+        this.maxLimit = Math.max(minLimit, props.getGovernorMaxLimit());
+        this.limit = Math.min(maxLimit, Math.max(minLimit, props.getGovernorInitialLimit()));
+        this.maxRetries = props.getGovernorMaxRetries();
+        this.initialBackoffMillis = Math.max(1, props.getGovernorInitialBackoff().toMillis());
+        this.maxBackoffMillis = Math.max(initialBackoffMillis, props.getGovernorMaxBackoff().toMillis());
+        this.nextTokenNanos = System.nanoTime() - burstNanos;
+
+        this.waits = Timer.builder("drive.governor.wait").register(registry);
+        this.rejectedRate = Counter.builder("drive.governor.rejected").tag("cause", "rate").register(registry);
+        this.rejectedConcurrency = Counter.builder("drive.governor.rejected").tag("cause", "concurrency").register(registry);
+        Gauge.builder("drive.governor.limit", this, DriveGovernor::currentLimit).register(registry);
+        Gauge.builder("drive.governor.inflight", this, DriveGovernor::inFlight).register(registry);
+        Gauge.builder("drive.governor.queue", queued, AtomicInteger::get).register(registry);
+    }
+
+    /** Ejecuta {@code call} con control de admisión y reintentos según la operación */
+    public <T> T call(String operation, Kind kind, DriveCall<T> call) throws IOException {
+        return run(operation, kind, call, true);
+    }
+
+    /** Igual que {@link #call} pero sin reintentos */
+    public <T> T callOnce(String operation, Kind kind, DriveCall<T> call) throws IOException {
+        return run(operation, kind, call, false);
+    }
+
+    /**
+     * Una petición batch con {@code operations} llamadas dentro: Drive descuenta cada una de la
+     * cuota, así que consume otros tantos tokens. Sin reintentos; los fallos por elemento los
+     * reintenta quien arma el batch.
+     */
+    public <T> T callBatch(String operation, int operations, DriveCall<T> call) throws IOException {
+        if (!enabled) {
+            return metrics.record(operation, Kind.METADATA, call);
+        }
+        acquire(Math.max(1, operations));
+        boolean ok = false;
+        boolean throttled = false;
+        try {
+            T result = metrics.record(operation, Kind.METADATA, call);
+            ok = true;
+            return result;
+        } catch (IOException e) {
+            throttled = isThrottled(e);
+            if (throttled) {
+                Counter.builder("drive.governor.throttled").tag("operation", operation)
+                        .tag("code", DriveMetrics.code(e)).register(registry).increment();
+                cooldown(retryAfterMillis(e));
+            }
+            throw e;
+        } finally {
+            release(ok, throttled);
+        }
+    }
+
+    /** Backoff con jitter completo para el reintento {@code attempt} (desde 0) */
+    public long backoffMillis(int attempt) {
+        return ThreadLocalRandom.current().nextLong(backoffCap(attempt) + 1);
+    }
+
+    public int maxRetries() {
+        return maxRetries;
+    }
+
+    private <T> T run(String operation, Kind kind, DriveCall<T> call, boolean retry) throws IOException {
+        if (!enabled) {
+            return metrics.record(operation, kind, call);
+        }
+        for (int attempt = 0; ; attempt++) {
+            acquire(1);
+            boolean ok = false;
+            boolean throttled = false;
+            IOException failure;
+            try {
+                T result = metrics.record(operation, kind, call);
+                ok = true;
+                return result;
+            } catch (IOException e) {
+                failure = e;
+                throttled = isThrottled(e);
+            } finally {
+                release(ok, throttled);
+            }
+
+            long retryAfter = retryAfterMillis(failure);
+            if (throttled) {
+                Counter.builder("drive.governor.throttled").tag("operation", operation)
+                        .tag("code", DriveMetrics.code(failure)).register(registry).increment();
+                cooldown(retryAfter);
+            }
+            if (!retry || attempt >= maxRetries || !(throttled || IDEMPOTENT.contains(operation) && isTransient(failure))) {
+                throw failure;
+            }
+            metrics.recordRetry(operation, failure);
+            long waitMs = Math.max(retryAfter, backoffMillis(attempt));
+            log.debug("Drive {} falló ({}), reintento {} en {} ms", operation, DriveMetrics.code(failure), attempt + 1, waitMs);
+            sleep(waitMs);
+        }
+    }
+
+    /** Espera {@code tokens} tokens y un hueco de concurrencia, o falla si no llegan antes del timeout */
+    private void acquire(int tokens) throws IOException {
+        long start = System.nanoTime();
+        long deadline = start + acquireTimeoutNanos;
+        queued.incrementAndGet();
+        try {
+            long tokenAt;
+            lock.lock();
+            try {
+                tokenAt = Math.max(nextTokenNanos, start - burstNanos);
+                if (tokenAt - start > acquireTimeoutNanos) {
+                    rejectedRate.increment();
+                    throw new IOException("Cuota de Drive agotada: no hay token en "
+                            + TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos) + " ms");
+                }
+                nextTokenNanos = tokenAt + intervalNanos * tokens;
+            } finally {
+                lock.unlock();
+            }
+            sleep(TimeUnit.NANOSECONDS.toMillis(tokenAt - start));
+
+            lock.lockInterruptibly();
+            try {
+                while (inFlight >= (int) limit) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        rejectedConcurrency.increment();
+                        throw new IOException("Drive saturado: " + inFlight + " llamadas en curso (límite "
+                                + (int) limit + ")");
+                    }
+                    released.awaitNanos(remaining);
+                }
+                inFlight++;
+            } finally {
+                lock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido esperando turno para Drive");
+        } finally {
+            queued.decrementAndGet();
+            waits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void release(boolean ok, boolean throttled) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (throttled) {
+                long now = System.nanoTime();
+                if (now - lastDecreaseNanos >= DECREASE_WINDOW_NANOS) {
+                    lastDecreaseNanos = now;
+                    limit = Math.max(minLimit, limit / 2);
+                    log.warn("Drive limita la cuota: concurrencia reducida a {}", (int) limit);
+                }
+            } else if (ok) {
+                // +1 por "ronda" completa de llamadas, como el aumento aditivo de TCP
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Con Retry-After nadie vuelve a llamar a Drive hasta que pase, no sólo quien lo recibió */
+    private void cooldown(long retryAfterMillis) {
+        if (retryAfterMillis <= 0) return;
+        lock.lock();
+        try {
+            nextTokenNanos = Math.max(nextTokenNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long backoffCap(int attempt) {
+        return Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt, 20));
+    }
+
+    double currentLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 429, o 403 con motivo de cuota: Drive rechazó la petición sin ejecutarla */
+    public static boolean isThrottled(IOException e) {
+        return e instanceof HttpResponseException hre && isThrottled(hre.getStatusCode(), DriveMetrics.reason(e));
+    }
+
+    public static boolean isThrottled(int code, String reason) {
+        return code == 429 || code == 403 && RATE_LIMIT_REASONS.contains(reason);
+    }
+
+    /** 5xx o fallo de red (incluido timeout de socket), pero no una interrupción del hilo */
+    public static boolean isTransient(IOException e) {
+        if (e instanceof HttpResponseException hre) return hre.getStatusCode() >= 500;
+        return e instanceof SocketTimeoutException || !(e instanceof InterruptedIOException);
+    }
+
+    /** Retry-After en milisegundos (segundos o fecha HTTP), 0 si no viene */
+    public static long retryAfterMillis(IOException e) {
+        if (!(e instanceof HttpResponseException hre) || hre.getHeaders() == null) return 0;
+        String value = hre.getHeaders().getFirstHeaderStringValue("Retry-After");
+        if (value == null || value.isBlank()) return 0;
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException notSeconds) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (DateTimeParseException unparseable) {
+                return 0;
+            }
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido durante el backoff de Drive");
+        }
+    }
+}
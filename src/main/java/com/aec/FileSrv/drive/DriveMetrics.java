@@ -0,0 +1,138 @@
+package com.aec.FileSrv.drive;
+
+import com.aec.FileSrv.config.ServerTiming;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpResponseException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Métricas de cada llamada a la API de Drive: {@code drive.api.requests} (timer con histograma,
+ * por operación y resultado), {@code drive.api.inflight}, {@code drive.api.errors} (código HTTP y
+ * {@code reason} de Google), {@code drive.api.retries} y {@code drive.bytes} por dirección.
+ * El tiempo de cada llamada se suma también al {@code Server-Timing} de la petición en curso.
+ */
+@Component
+public class DriveMetrics {
+
+    @FunctionalInterface
+    public interface DriveCall<T> {
+        T call() throws IOException;
+    }
+
+    /** Metadatos (list, create de carpeta, delete...) o transferencia de contenido */
+    public enum Kind { METADATA, TRANSFER }
+
+    private final MeterRegistry registry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final Counter uploaded;
+    private final Counter downloaded;
+
+    public DriveMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.uploaded = Counter.builder("drive.bytes").tag("direction", "upload").baseUnit("bytes").register(registry);
+        this.downloaded = Counter.builder("drive.bytes").tag("direction", "download").baseUnit("bytes").register(registry);
+    }
+
+    public <T> T record(String operation, Kind kind, DriveCall<T> call) throws IOException {
+        AtomicInteger active = inFlight.computeIfAbsent(operation, op -> {
+            AtomicInteger gauge = new AtomicInteger();
+            Gauge.builder("drive.api.inflight", gauge, AtomicInteger::get).tag("operation", op).register(registry);
+            return gauge;
+        });
+        active.incrementAndGet();
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            return call.call();
+        } catch (IOException | RuntimeException e) {
+            outcome = code(e);
+            recordError(operation, e);
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            active.decrementAndGet();
+            Timer.builder("drive.api.requests")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+            ServerTiming.add(kind == Kind.METADATA ? ServerTiming.Phase.DRIVE_META : ServerTiming.Phase.DRIVE_TRANSFER,
+                    elapsed);
+        }
+    }
+
+    /** Un reintento propio (no del cliente de Google) tras {@code cause} */
+    public void recordRetry(String operation, Throwable cause) {
+        Counter.builder("drive.api.retries").tag("operation", operation).tag("code", code(cause))
+                .register(registry).increment();
+    }
+
+    public void recordUploaded(long bytes) {
+        if (bytes > 0) uploaded.increment(bytes);
+    }
+
+    /** Cuenta los bytes descargados a medida que se consumen */
+    public InputStream countDownload(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) downloaded.increment();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buf, int off, int len) throws IOException {
+                int n = super.read(buf, off, len);
+                if (n > 0) downloaded.increment(n);
+                return n;
+            }
+        };
+    }
+
+    private void recordError(String operation, Throwable e) {
+        Counter.builder("drive.api.errors")
+                .tag("operation", operation)
+                .tag("code", code(e))
+                .tag("reason", reason(e))
+                .register(registry)
+                .increment();
+    }
+
+    /** Código HTTP si Drive respondió; si no, el tipo de fallo de red */
+    static String code(Throwable e) {
+        if (e instanceof HttpResponseException hre) return String.valueOf(hre.getStatusCode());
+        if (e instanceof SocketTimeoutException) return "timeout";
+        if (e instanceof InterruptedIOException) return "interrupted";
+        if (e instanceof IOException) return "io_error";
+        return "error";
+    }
+
+    /** {@code reason} del primer error de Google (rateLimitExceeded, notFound...) */
+    static String reason(Throwable e) {
+        if (e instanceof GoogleJsonResponseException gje && gje.getDetails() != null) {
+            GoogleJsonError details = gje.getDetails();
+            if (details.getErrors() != null && !details.getErrors().isEmpty()
+                    && details.getErrors().get(0).getReason() != null) {
+                return details.getErrors().get(0).getReason();
+            }
+        }
+        return "none";
+    }
+}
@@ -0,0 +1,13 @@
+package com.aec.FileSrv.dto;
+
+import lombok.*;
+
+/** Resultado de un archivo dentro de una subida por lotes: {@code file} si fue bien, {@code error} si no */
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class BatchUploadResultDto {
+    private String filename;
+    private boolean success;
+    private FileInfoDto file;
+    private String error;
+
+}
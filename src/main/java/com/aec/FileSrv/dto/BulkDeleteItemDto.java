@@ -0,0 +1,12 @@
+package com.aec.FileSrv.dto;
+
+import lombok.*;
+
+/** Resultado de un archivo dentro de un borrado en lote: {@code deleted}, {@code not_found} o {@code failed} */
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class BulkDeleteItemDto {
+    private String driveFileId;
+    private String status;
+    private String error;
+
+}
@@ -0,0 +1,14 @@
+package com.aec.FileSrv.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/** Borrado en lote: totales y el estado de cada archivo; los {@code failed} siguen en BD y se pueden volver a pedir */
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class BulkDeleteResultDto {
+    private int deleted;
+    private int failed;
+    private List<BulkDeleteItemDto> items;
+
+}
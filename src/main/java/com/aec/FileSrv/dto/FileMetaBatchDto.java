@@ -0,0 +1,14 @@
+package com.aec.FileSrv.dto;
+
+import lombok.*;
+
+import java.util.List;
+import java.util.Map;
+
+/** Archivos agrupados por producto y por orden, en el orden en que se pidieron los ids */
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class FileMetaBatchDto {
+    private Map<Long, List<FileInfoDto>> products;
+    private Map<Long, List<FileInfoDto>> orders;
+
+}
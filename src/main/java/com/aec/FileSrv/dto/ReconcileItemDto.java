@@ -0,0 +1,23 @@
+package com.aec.FileSrv.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Fila de {@code stored_files} frente a lo que hay en Drive: {@code ok}, {@code mismatch} (tamaño o
+ * md5 distintos), {@code missing} (ya no está en Drive) o {@code failed} (Drive no respondió).
+ */
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ReconcileItemDto {
+    private String driveFileId;
+    private String filename;
+    private String status;
+    private Long storedSize;
+    private Long driveSize;
+    private String storedMd5;
+    private String driveMd5;
+    private Instant driveModifiedTime;
+    private String error;
+
+}
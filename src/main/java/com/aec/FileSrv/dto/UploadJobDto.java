@@ -0,0 +1,20 @@
+package com.aec.FileSrv.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class UploadJobDto {
+    private String jobId;
+    private String status;
+    private String filename;
+    private Long size;
+    private Integer attempts;
+    private String error;
+    private Instant createdAt;
+    private Instant updatedAt;
+    /** Presente cuando status = COMPLETED */
+    private FileInfoDto file;
+
+}
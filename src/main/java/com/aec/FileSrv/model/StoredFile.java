@@ -6,7 +6,10 @@ import lombok.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "stored_files")
+// Únicos parciales (product_id, filename) y (order_id, filename): ver db/migration/V2 (JPA no expresa WHERE ni INCLUDE)
+@Table(name = "stored_files", indexes = {
+        @Index(name = "idx_stored_files_sha256_size", columnList = "sha256, size")
+})
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class StoredFile {
     @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -40,4 +43,11 @@ public class StoredFile {
     @Column(name = "order_id", nullable = true)
     private Long orderId;
 
+    // Hashes del contenido para deduplicar; null en filas anteriores a su introducción
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(length = 32)
+    private String md5;
+
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.aec.FileSrv.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Subida asíncrona: el archivo ya está en disco local y un worker lo lleva a Drive.
+ * Se persiste para que un reinicio retome los trabajos pendientes.
+ */
+@Entity
+@Table(name = "upload_jobs", indexes = {
+        @Index(name = "idx_upload_jobs_owner_status", columnList = "owner, status")
+})
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class UploadJob {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    /** UUID: es lo que el cliente usa para consultar el estado */
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    /**
+     * Instancia que tiene la copia local; sólo ella procesa el trabajo mientras renueve el
+     * arriendo (updatedAt). Si deja de hacerlo, otra instancia lo toma.
+     */
+    @Column(nullable = false)
+    private String owner;
+
+    @Column(nullable = false, length = 1024)
+    private String spoolPath;
+
+    @Column(nullable = false)
+    private String filename;
+
+    @Column(nullable = false)
+    private String mimeType;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    private String uploader;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    /** Resultado cuando termina bien */
+    private String driveFileId;
+    private Long storedFileId;
+
+    /** Último error; en FAILED es el motivo final */
+    @Column(length = 2048)
+    private String error;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+}
@@ -0,0 +1,78 @@
+package com.aec.FileSrv.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Sesión de subida reanudable de Drive. Se persiste para poder continuar
+ * una transferencia interrumpida (p. ej. reinicio del pod) desde el último byte confirmado.
+ */
+@Entity
+@Table(name = "upload_sessions", indexes = {
+        @Index(name = "idx_upload_sessions_owner_status", columnList = "owner, status")
+})
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class UploadSession {
+
+    public enum Status { UPLOADING, COMPLETED, FAILED }
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Instancia que tiene la copia local; sólo ella reanuda la sesión mientras ésta avance
+     * (updatedAt se renueva con cada chunk). Si deja de avanzar, otra instancia la toma.
+     */
+    @Column(nullable = false)
+    private String owner;
+
+    /** URI devuelta por Drive en la cabecera Location al iniciar la sesión */
+    @Column(length = 4096)
+    private String sessionUri;
+
+    /** Copia local del contenido, necesaria para reanudar tras un reinicio */
+    @Column(nullable = false, length = 1024)
+    private String spoolPath;
+
+    @Column(nullable = false)
+    private String folderId;
+
+    /** Si no es null, la subida reemplaza el contenido de este archivo de Drive */
+    private String existingFileId;
+
+    @Column(nullable = false)
+    private String filename;
+
+    @Column(nullable = false)
+    private String mimeType;
+
+    @Column(nullable = false)
+    private Long totalBytes;
+
+    @Column(nullable = false)
+    private Long bytesUploaded;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    /** ID final en Drive cuando la sesión se completa */
+    private String driveFileId;
+
+    // Dueño del archivo, para registrar el StoredFile si la subida se completa tras un reinicio
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    private String uploader;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+}
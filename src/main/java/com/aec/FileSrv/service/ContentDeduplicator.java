@@ -0,0 +1,135 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.Repository.StoredFileRepository;
+import com.aec.FileSrv.model.StoredFile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deduplicación por contenido: SHA-256 (clave) y MD5 (el {@code md5Checksum} que expone Drive)
+ * calculados en una sola pasada. Si el blob ya está en Drive se copia en el servidor en lugar
+ * de volver a subir los bytes.
+ */
+@Component
+public class ContentDeduplicator {
+
+    public record Digests(String sha256, String md5, long size) { }
+
+    private final StoredFileRepository repo;
+    private final Counter unique;
+    private final Counter duplicates;
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    public ContentDeduplicator(StoredFileRepository repo, MeterRegistry registry) {
+        this.repo = repo;
+        this.unique = Counter.builder("files.dedup.uploads").tag("result", "unique").register(registry);
+        this.duplicates = Counter.builder("files.dedup.uploads").tag("result", "duplicate").register(registry);
+        FunctionCounter.builder("files.dedup.bytes.saved", bytesSaved, AtomicLong::get)
+                .baseUnit("bytes").register(registry);
+        Gauge.builder("files.dedup.ratio", this, ContentDeduplicator::ratio).register(registry);
+    }
+
+    /** Lee el multipart (ya volcado por el contenedor) una vez y devuelve ambos hashes. */
+    public Digests digest(MultipartFile file) throws IOException {
+        try (HashingInputStream in = hashing(file.getInputStream())) {
+            in.transferTo(OutputStream.nullOutputStream());
+            return in.digests();
+        }
+    }
+
+    /** Envuelve un stream para calcular los hashes mientras otro lo consume (p. ej. la subida a Drive). */
+    public HashingInputStream hashing(InputStream in) {
+        return new HashingInputStream(in);
+    }
+
+    /** Archivo ya registrado con el mismo contenido, si existe. */
+    public Optional<StoredFile> findBlob(Digests d) {
+        return repo.findFirstBySha256AndSizeOrderByIdAsc(d.sha256(), d.size());
+    }
+
+    public void recordUnique() {
+        unique.increment();
+    }
+
+    public void recordDuplicate(long size) {
+        duplicates.increment();
+        bytesSaved.addAndGet(size);
+    }
+
+    private double ratio() {
+        double d = duplicates.count();
+        double total = d + unique.count();
+        return total == 0 ? 0 : d / total;
+    }
+
+    public static final class HashingInputStream extends FilterInputStream {
+        private final MessageDigest sha256 = newDigest("SHA-256");
+        private final MessageDigest md5 = newDigest("MD5");
+        private long count;
+
+        private HashingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                sha256.update((byte) b);
+                md5.update((byte) b);
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n > 0) {
+                sha256.update(buf, off, n);
+                md5.update(buf, off, n);
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Los bytes saltados no se hashean: se leen para que el resultado siga siendo válido
+            return readNBytes((int) Math.min(n, Integer.MAX_VALUE)).length;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /** Hashes de lo leído; sólo tienen sentido si se consumió el stream completo. */
+        public Digests digests() {
+            return new Digests(HexFormat.of().formatHex(sha256.digest()),
+                    HexFormat.of().formatHex(md5.digest()), count);
+        }
+
+        private static MessageDigest newDigest(String algorithm) {
+            try {
+                return MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(algorithm + " no disponible", e);
+            }
+        }
+    }
+}
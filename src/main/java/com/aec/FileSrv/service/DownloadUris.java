@@ -0,0 +1,30 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.config.FileServiceProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * URLs de descarga vía gateway. El prefijo se arma una sola vez; por fila sólo se concatena
+ * el driveFileId (en lugar de un {@code UriComponentsBuilder} por cada DTO).
+ */
+@Component
+public class DownloadUris {
+
+    private final String prefix;
+
+    public DownloadUris(FileServiceProperties props) {
+        this.prefix = UriComponentsBuilder
+                .fromHttpUrl(props.getGatewayBaseUrl())
+                .path("/api/files/")
+                .build()
+                .toUriString();
+    }
+
+    public String forDriveId(String driveFileId) {
+        return prefix + UriUtils.encodePathSegment(driveFileId, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,165 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.drive.DriveGovernor;
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Operaciones de Drive en lote: hasta {@value #MAX_BATCH} llamadas por petición HTTP
+ * ({@code /batch/drive/v3}) en vez de una por archivo. Cada elemento tiene su propio resultado;
+ * los que fallan por cuota o 5xx se reenvían en un batch nuevo con backoff, hasta
+ * {@code governor-max-retries} rondas. Cada batch pasa por {@link DriveGovernor#callBatch} y
+ * consume un token por llamada que lleva dentro.
+ */
+@Service
+@RequiredArgsConstructor
+public class DriveBatchService {
+
+    /** Límite de Drive de llamadas por batch */
+    static final int MAX_BATCH = 100;
+    static final String METADATA_FIELDS = "id,size,md5Checksum,modifiedTime";
+
+    private static final Logger log = LoggerFactory.getLogger(DriveBatchService.class);
+
+    private final Drive drive;
+    private final DriveGovernor governor;
+    private final MeterRegistry registry;
+
+    /**
+     * Resultado de un elemento: {@code code} es el estado HTTP de su respuesta dentro del batch
+     * (0 si el batch entero falló sin respuesta) y {@code file} los metadatos en {@link #metadata}.
+     */
+    public record ItemResult(String driveFileId, int code, String reason, File file) {
+        public boolean ok() {
+            return code >= 200 && code < 300;
+        }
+
+        public boolean notFound() {
+            return code == 404;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Enqueuer<T> {
+        void queue(BatchRequest batch, String id, JsonBatchCallback<T> callback) throws IOException;
+    }
+
+    /** {@code files.delete} de cada id; un 404 significa que ya no estaba en Drive */
+    public Map<String, ItemResult> delete(Collection<String> driveFileIds) throws InterruptedIOException {
+        return this.<Void>run("files.delete", driveFileIds, (batch, id, callback) ->
+                drive.files().delete(id).queue(batch, callback));
+    }
+
+    /** Tamaño, md5 y fecha de modificación de cada id, para reconciliar con {@code stored_files} */
+    public Map<String, ItemResult> metadata(Collection<String> driveFileIds) throws InterruptedIOException {
+        return this.<File>run("files.get", driveFileIds, (batch, id, callback) ->
+                drive.files().get(id).setFields(METADATA_FIELDS).queue(batch, callback));
+    }
+
+    private <T> Map<String, ItemResult> run(String operation, Collection<String> ids, Enqueuer<T> enqueuer)
+            throws InterruptedIOException {
+        Map<String, ItemResult> results = new LinkedHashMap<>();
+        List<String> pending = new ArrayList<>(new LinkedHashSet<>(ids));
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            List<String> retry = new ArrayList<>();
+            for (int from = 0; from < pending.size(); from += MAX_BATCH) {
+                List<String> chunk = pending.subList(from, Math.min(from + MAX_BATCH, pending.size()));
+                execute(operation, chunk, enqueuer, results, retry);
+            }
+            if (retry.isEmpty() || attempt >= governor.maxRetries()) {
+                break;
+            }
+            count(operation, "retried", retry.size());
+            long waitMs = governor.backoffMillis(attempt);
+            log.debug("Drive batch {}: {} elementos fallidos, ronda {} en {} ms", operation, retry.size(), attempt + 1, waitMs);
+            sleep(waitMs);
+            pending = retry;
+        }
+        long ok = results.values().stream().filter(ItemResult::ok).count();
+        count(operation, "ok", ok);
+        count(operation, "failed", results.size() - ok);
+        return results;
+    }
+
+    private <T> void execute(String operation, List<String> chunk, Enqueuer<T> enqueuer,
+                             Map<String, ItemResult> results, List<String> retry) throws InterruptedIOException {
+        try {
+            BatchRequest batch = drive.batch();
+            for (String id : chunk) {
+                enqueuer.queue(batch, id, new JsonBatchCallback<T>() {
+                    @Override
+                    public void onSuccess(T body, HttpHeaders headers) {
+                        results.put(id, new ItemResult(id, 200, null, body instanceof File f ? f : null));
+                    }
+
+                    @Override
+                    public void onFailure(GoogleJsonError error, HttpHeaders headers) {
+                        String reason = reason(error);
+                        results.put(id, new ItemResult(id, error.getCode(), reason, null));
+                        if (DriveGovernor.isThrottled(error.getCode(), reason) || error.getCode() >= 500) {
+                            retry.add(id);
+                        }
+                    }
+                });
+            }
+            governor.callBatch("batch." + operation, chunk.size(), () -> {
+                batch.execute();
+                return null;
+            });
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            // Sin respuesta del batch no se ejecutó ningún callback: todo el trozo queda pendiente
+            int code = e instanceof HttpResponseException hre ? hre.getStatusCode() : 0;
+            boolean retryable = DriveGovernor.isThrottled(e) || DriveGovernor.isTransient(e);
+            log.warn("Drive batch {} de {} elementos falló: {}", operation, chunk.size(), e.getMessage());
+            for (String id : chunk) {
+                results.put(id, new ItemResult(id, code, e.getMessage(), null));
+                if (retryable) retry.add(id);
+            }
+        }
+    }
+
+    private void count(String operation, String outcome, long items) {
+        if (items <= 0) return;
+        Counter.builder("drive.batch.items").tag("operation", operation).tag("outcome", outcome)
+                .register(registry).increment(items);
+    }
+
+    private static String reason(GoogleJsonError error) {
+        if (error.getErrors() != null && !error.getErrors().isEmpty() && error.getErrors().get(0).getReason() != null) {
+            return error.getErrors().get(0).getReason();
+        }
+        return error.getMessage();
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido durante el backoff del batch de Drive");
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.config.ServerTiming;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Listado paginado de {@code stored_files} por clave (keyset): orden {@code uploaded_at DESC, id DESC}
+ * y cada página continúa con {@code (uploaded_at, id) < (cursor)}, así que la página 1000 cuesta lo
+ * mismo que la primera (un OFFSET leería y descartaría todas las anteriores). Cada combinación de
+ * filtros tiene un índice (V4) que ya devuelve las filas en ese orden.
+ *
+ * Las filas se escriben en el JSON según llegan de la BD (fetch size acotado dentro de una
+ * transacción de sólo lectura), sin juntar la página en una lista.
+ */
+@Service
+@RequiredArgsConstructor
+public class FileListingService {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    private static final int FETCH_SIZE = 200;
+    private static final String CURSOR_VERSION = "1";
+    private static final String SELECT = "SELECT id, drive_file_id, filename, original_name, file_type, size, "
+            + "uploaded_at, uploader, product_id, order_id FROM stored_files";
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper mapper;
+    private final DownloadUris downloadUris;
+
+    public enum Type { PRODUCT, RECEIPT, ALL }
+
+    /** Posición tras la última fila entregada: el cursor opaco la codifica */
+    public record Cursor(Instant uploadedAt, long id) {
+        public String encode() {
+            long micros = ChronoUnit.MICROS.between(Instant.EPOCH, uploadedAt);
+            String raw = CURSOR_VERSION + ":" + micros + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /** @throws IllegalArgumentException si el cursor no es uno emitido por este servicio */
+        public static Cursor decode(String token) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+                if (parts.length != 3 || !CURSOR_VERSION.equals(parts[0])) {
+                    throw new IllegalArgumentException("Cursor inválido");
+                }
+                return new Cursor(Instant.EPOCH.plus(Long.parseLong(parts[1]), ChronoUnit.MICROS), Long.parseLong(parts[2]));
+            } catch (IllegalArgumentException e) {
+                // NumberFormatException y base64 mal formado también son IllegalArgumentException
+                throw new IllegalArgumentException("Cursor inválido", e);
+            }
+        }
+    }
+
+    public record Query(Type type, Long productId, Long orderId, String uploader,
+                        Instant from, Instant to, Cursor after, int size) {
+        public Query {
+            size = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        }
+    }
+
+    public static Type parseType(String type) {
+        return switch (type.toLowerCase()) {
+            case "product", "products" -> Type.PRODUCT;
+            case "receipt", "receipts", "order", "orders" -> Type.RECEIPT;
+            case "all" -> Type.ALL;
+            default -> throw new IllegalArgumentException("Tipo desconocido: " + type);
+        };
+    }
+
+    /**
+     * Escribe {@code {"items":[...],"nextCursor":"..."}} en {@code out}; {@code nextCursor} es null
+     * en la última página. Se pide una fila de más para saber si hay otra página sin contar.
+     */
+    @Transactional(readOnly = true)
+    public void writePage(Query q, OutputStream out) throws IOException {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(SELECT).append(" WHERE TRUE");
+        if (q.type() == Type.PRODUCT || q.productId() != null) {
+            sql.append(" AND product_id IS NOT NULL");
+        }
+        if (q.type() == Type.RECEIPT || q.orderId() != null) {
+            sql.append(" AND order_id IS NOT NULL");
+        }
+        if (q.productId() != null) {
+            sql.append(" AND product_id = ?");
+            args.add(q.productId());
+        }
+        if (q.orderId() != null) {
+            sql.append(" AND order_id = ?");
+            args.add(q.orderId());
+        }
+        if (q.uploader() != null) {
+            sql.append(" AND uploader = ?");
+            args.add(q.uploader());
+        }
+        if (q.from() != null) {
+            sql.append(" AND uploaded_at >= ?");
+            args.add(Timestamp.from(q.from()));
+        }
+        if (q.to() != null) {
+            sql.append(" AND uploaded_at < ?");
+            args.add(Timestamp.from(q.to()));
+        }
+        if (q.after() != null) {
+            sql.append(" AND (uploaded_at, id) < (?, ?)");
+            args.add(Timestamp.from(q.after().uploadedAt()));
+            args.add(q.after().id());
+        }
+        sql.append(" ORDER BY uploaded_at DESC, id DESC LIMIT ?");
+        args.add(q.size() + 1);
+
+        long start = System.nanoTime();
+        try (JsonGenerator json = mapper.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("items");
+            Cursor[] last = new Cursor[1];
+            int[] written = new int[1];
+            boolean[] more = new boolean[1];
+            jdbc.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql.toString());
+                ps.setFetchSize(FETCH_SIZE);
+                for (int i = 0; i < args.size(); i++) {
+                    ps.setObject(i + 1, args.get(i));
+                }
+                return ps;
+            }, rs -> {
+                if (written[0] == q.size()) {
+                    more[0] = true;
+                    return;
+                }
+                try {
+                    last[0] = writeRow(json, rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                written[0]++;
+            });
+            json.writeEndArray();
+            json.writeStringField("nextCursor", more[0] ? last[0].encode() : null);
+            json.writeEndObject();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            ServerTiming.add(ServerTiming.Phase.DB, System.nanoTime() - start);
+        }
+    }
+
+    private Cursor writeRow(JsonGenerator json, ResultSet rs) throws SQLException, IOException {
+        long id = rs.getLong("id");
+        String driveFileId = rs.getString("drive_file_id");
+        Instant uploadedAt = rs.getTimestamp("uploaded_at").toInstant();
+        json.writeStartObject();
+        json.writeNumberField("id", id);
+        json.writeStringField("driveFileId", driveFileId);
+        json.writeStringField("filename", rs.getString("filename"));
+        json.writeStringField("originalName", rs.getString("original_name"));
+        json.writeStringField("fileType", rs.getString("file_type"));
+        json.writeNumberField("size", rs.getLong("size"));
+        json.writeStringField("uploader", rs.getString("uploader"));
+        json.writeStringField("uploadedAt", uploadedAt.toString());
+        writeNullableLong(json, "productId", rs.getLong("product_id"), rs.wasNull());
+        writeNullableLong(json, "orderId", rs.getLong("order_id"), rs.wasNull());
+        json.writeStringField("downloadUri", downloadUris.forDriveId(driveFileId));
+        json.writeEndObject();
+        return new Cursor(uploadedAt, id);
+    }
+
+    private static void writeNullableLong(JsonGenerator json, String field, long value, boolean isNull) throws IOException {
+        if (isNull) {
+            json.writeNullField(field);
+        } else {
+            json.writeNumberField(field, value);
+        }
+    }
+}
@@ -1,27 +1,57 @@
 package com.aec.FileSrv.service;
 
+import com.aec.FileSrv.Repository.StoredFileMeta;
 import com.aec.FileSrv.Repository.StoredFileRepository;
+import com.aec.FileSrv.config.DriveIoExecutor;
+import com.aec.FileSrv.config.FileServiceProperties;
+import com.aec.FileSrv.drive.DriveContentCache;
 import com.aec.FileSrv.drive.DriveFile;
+import com.aec.FileSrv.dto.BatchUploadResultDto;
+import com.aec.FileSrv.dto.BulkDeleteItemDto;
+import com.aec.FileSrv.dto.BulkDeleteResultDto;
 import com.aec.FileSrv.dto.FileInfoDto;
+import com.aec.FileSrv.dto.FileMetaBatchDto;
+import com.aec.FileSrv.dto.ReconcileItemDto;
 import com.aec.FileSrv.model.StoredFile;
-import com.google.api.client.util.Value;
+import com.aec.FileSrv.model.UploadSession;
+import com.google.api.services.drive.model.File;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okio.internal.ZipEntry;
 
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.ZipOutputStream;
 
 @Service
@@ -31,11 +61,27 @@ public class FileStorageService {
 
     private final StoredFileRepository repo;
     private final GoogleDriveService drive;
-    @Value("${file-service.gateway-base-url}")
-    private String gatewayBaseUrl;
+    private final DriveBatchService driveBatch;
+    private final ResumableUploadService resumableUploads;
+    private final DriveContentCache contentCache;
+    private final ProductZipBuilder zipBuilder;
+    private final ProductZipArtifactStore zipArtifacts;
+    private final ContentDeduplicator dedup;
+    private final StoredFileWriter writer;
+    private final StoredFileMetaCache metaCache;
+    private final DriveIoExecutor driveIo;
+    private final FileServiceProperties props;
+    private final DownloadUris downloadUris;
+    /** Hay un hilo retomando subidas reanudables */
+    private final AtomicBoolean resuming = new AtomicBoolean();
+
+    /** Fila de {@code driveFileId} desde la caché de metadatos; a la BD sólo llegan los fallos */
+    public Optional<StoredFile> findByDriveId(String driveFileId) {
+        return metaCache.find(driveFileId);
+    }
 
     public Resource loadAsResource(String driveFileId) throws IOException {
-        Optional<StoredFile> sf = repo.findByDriveFileId(driveFileId);
+        Optional<StoredFile> sf = findByDriveId(driveFileId);
         if (sf.isEmpty()) {
             throw new java.nio.file.NoSuchFileException("No existe en DB: " + driveFileId);
         }
@@ -43,8 +89,30 @@ public class FileStorageService {
         return new InputStreamResource(in);
     }
 
+    /** Contenido completo de un archivo ya resuelto en BD (sin volver a consultarla) */
+    public InputStream openContent(StoredFile sf) throws IOException {
+        // Read-through: si el cliente lo consume entero queda en la caché local
+        return contentCache.readThrough(sf.getDriveFileId(), contentVersion(sf), sf.getSize(),
+                drive.downloadFile(sf.getDriveFileId()));
+    }
+
+    /** Copia local del contenido si está en la caché de disco */
+    public Optional<Path> cachedContent(StoredFile sf) {
+        return contentCache.lookup(sf.getDriveFileId(), contentVersion(sf), sf.getSize());
+    }
+
+    /** Cambia cuando el archivo de Drive se reemplaza en sitio (mismo driveFileId) */
+    private static String contentVersion(StoredFile sf) {
+        return Long.toHexString(sf.getUploadedAt() != null ? sf.getUploadedAt().toEpochMilli() : 0);
+    }
+
+    /** Bytes [start, end] (inclusive) de un archivo ya resuelto en BD */
+    public InputStream openRange(StoredFile sf, long start, long end) throws IOException {
+        return drive.downloadRange(sf.getDriveFileId(), start, end);
+    }
+
     public String getFileContentType(String driveFileId) {
-        return repo.findByDriveFileId(driveFileId)
+        return findByDriveId(driveFileId)
                 .map(StoredFile::getFileType)
                 .orElse("application/octet-stream");
     }
@@ -59,43 +127,38 @@ public class FileStorageService {
                 throw new IllegalArgumentException("El productId no puede ser null");
             }
 
+            // Hashes en una pasada sobre la copia que ya hizo el contenedor
+            ContentDeduplicator.Digests digests = dedup.digest(file);
+
+            // Lectura previa a propósito: una resubida idéntica termina aquí sin tocar Drive, y la fila
+            // anterior dice qué driveFileId sacar de la caché. No decide la escritura (ésa es el upsert
+            // de abajo, una sola sentencia); si dos subidas se cruzan sólo se pierde este atajo.
+            Optional<StoredFile> existingStoredFile = repo.findByProductIdAndFilename(productId,
+                    file.getOriginalFilename());
+            if (existingStoredFile.filter(sf -> sameContent(sf, digests)).isPresent()) {
+                // Mismo nombre y mismo contenido: no hay nada que subir ni que invalidar
+                dedup.recordDuplicate(digests.size());
+                return toDto(existingStoredFile.get());
+            }
+
             // Crear estructura de carpetas
             String root = drive.getOrCreateFolder("productos", null);
             String folder = drive.getOrCreateFolder(String.valueOf(productId), root);
 
-            // Subir archivo
-            String driveId = drive.uploadFileToFolder(file, folder);
+            // Subir archivo (o copiarlo en Drive si ese contenido ya existe)
+            String existingFileId = drive.findFileInFolder(folder, file.getOriginalFilename());
+            String driveId = uploadOrCopy(file, folder, existingFileId, digests, productId, null, uploader);
 
-            // Buscar si ya existe
-            Optional<StoredFile> existingStoredFile = repo.findByProductIdAndFilename(productId,
-                    file.getOriginalFilename());
-
-            StoredFile sf;
-            if (existingStoredFile.isPresent()) {
-                sf = existingStoredFile.get();
-                // Actualizar solo los campos que podrían cambiar
-                sf.setDriveFileId(driveId);
-                sf.setFileType(file.getContentType());
-                sf.setSize(file.getSize());
-                sf.setUploader(uploader != null ? uploader : "public");
-                sf.setUploadedAt(Instant.now());
-                log.info("Actualizando archivo existente para producto {}: {}", productId, file.getOriginalFilename());
-            } else {
-                // Si no existe, crear un nuevo StoredFile
-                sf = new StoredFile();
-                sf.setDriveFileId(driveId);
-                sf.setFilename(file.getOriginalFilename());
-                sf.setOriginalName(file.getOriginalFilename());
-                sf.setFileType(file.getContentType());
-                sf.setSize(file.getSize());
-                sf.setUploader(uploader != null ? uploader : "public");
-                sf.setUploadedAt(Instant.now());
-                sf.setProductId(productId);
-                sf.setOrderId(null);
-                log.info("Creando nuevo archivo para producto {}: {}", productId, file.getOriginalFilename());
-            }
-
-            return toDto(repo.save(sf));
+            // Upsert en una sentencia: si otra subida del mismo nombre llegó antes, se actualiza su fila
+            StoredFile sf = new StoredFile();
+            applyUpload(sf, productId, null, file.getOriginalFilename(), file.getContentType(),
+                    file.getSize(), uploader, driveId, digests);
+            StoredFile saved = writer.upsert(sf);
+            forgetReplaced(existingFileId, existingStoredFile);
+            log.info("{} archivo para producto {}: {}", existingStoredFile.isPresent() ? "Actualizado" : "Creado",
+                    productId, file.getOriginalFilename());
+            zipArtifacts.invalidate(productId);
+            return toDto(saved);
         } catch (Exception e) {
             log.error("Error almacenando archivo de producto {}: {}", productId, e.getMessage(), e);
             throw new IOException("Error almacenando archivo de producto: " + e.getMessage(), e);
@@ -112,72 +175,291 @@ public class FileStorageService {
                 throw new IllegalArgumentException("El orderId no puede ser null");
             }
 
+            ContentDeduplicator.Digests digests = dedup.digest(file);
+
+            // Lectura previa a propósito, como en storeProductFile: atajo para resubidas idénticas
+            Optional<StoredFile> existingStoredFile = repo.findByOrderIdAndFilename(orderId,
+                    file.getOriginalFilename());
+            if (existingStoredFile.filter(sf -> sameContent(sf, digests)).isPresent()) {
+                dedup.recordDuplicate(digests.size());
+                return toDto(existingStoredFile.get());
+            }
+
             // Crear estructura de carpetas
             String root = drive.getOrCreateFolder("comprobantes", null);
             String folder = drive.getOrCreateFolder(String.valueOf(orderId), root);
 
-            // Subir archivo
-            String driveId = drive.uploadFileToFolder(file, folder);
+            // Subir archivo (o copiarlo en Drive si ese contenido ya existe)
+            String existingFileId = drive.findFileInFolder(folder, file.getOriginalFilename());
+            String driveId = uploadOrCopy(file, folder, existingFileId, digests, null, orderId, uploader);
 
-            // Buscar si ya existe
-            Optional<StoredFile> existingStoredFile = repo.findByOrderIdAndFilename(orderId,
-                    file.getOriginalFilename());
+            StoredFile sf = new StoredFile();
+            applyUpload(sf, null, orderId, file.getOriginalFilename(), file.getContentType(),
+                    file.getSize(), uploader, driveId, digests);
+            StoredFile saved = writer.upsert(sf);
+            forgetReplaced(existingFileId, existingStoredFile);
+            log.info("{} comprobante para orden {}: {}", existingStoredFile.isPresent() ? "Actualizado" : "Creado",
+                    orderId, file.getOriginalFilename());
+            return toDto(saved);
+        } catch (Exception e) {
+            log.error("Error almacenando comprobante para orden {}: {}", orderId, e.getMessage(), e);
+            throw new IOException("Error almacenando comprobante: " + e.getMessage(), e);
+        }
+    }
 
-            StoredFile sf;
-            if (existingStoredFile.isPresent()) {
-                sf = existingStoredFile.get();
-                sf.setDriveFileId(driveId);
-                sf.setFileType(file.getContentType());
-                sf.setSize(file.getSize());
-                sf.setUploader(uploader != null ? uploader : "public");
-                sf.setUploadedAt(Instant.now());
-                log.info("Actualizando comprobante existente para orden {}: {}", orderId, file.getOriginalFilename());
-            } else {
-                sf = new StoredFile();
-                sf.setDriveFileId(driveId);
-                sf.setFilename(file.getOriginalFilename());
-                sf.setOriginalName(file.getOriginalFilename());
-                sf.setFileType(file.getContentType());
-                sf.setSize(file.getSize());
-                sf.setUploader(uploader != null ? uploader : "public");
-                sf.setUploadedAt(Instant.now());
-                sf.setProductId(null);
-                sf.setOrderId(orderId);
-                log.info("Creando nuevo comprobante para orden {}: {}", orderId, file.getOriginalFilename());
-            }
-
-            return toDto(repo.save(sf));
+    /**
+     * Versión en streaming de {@link #storeProductFile}: el cuerpo va directo a Drive
+     * sin pasar por el parser multipart ni por disco.
+     */
+    public FileInfoDto storeProductStream(InputStream in, long size, String filename, String mime,
+                                          String uploader, Long productId) throws IOException {
+        if (productId == null) {
+            throw new IllegalArgumentException("El productId no puede ser null");
+        }
+        try {
+            String root = drive.getOrCreateFolder("productos", null);
+            String folder = drive.getOrCreateFolder(String.valueOf(productId), root);
+            ContentDeduplicator.HashingInputStream hashing = dedup.hashing(in);
+            String driveId = drive.uploadStreamToFolder(hashing, size, filename, mime, folder);
+            dedup.recordUnique();
+            return toDto(persistUpload(productId, null, filename, mime, size, uploader, driveId, hashing.digests()));
+        } catch (Exception e) {
+            log.error("Error almacenando archivo de producto {}: {}", productId, e.getMessage(), e);
+            throw new IOException("Error almacenando archivo de producto: " + e.getMessage(), e);
+        }
+    }
+
+    /** Versión en streaming de {@link #storeReceiptFile}. */
+    public FileInfoDto storeReceiptStream(InputStream in, long size, String filename, String mime,
+                                          String uploader, Long orderId) throws IOException {
+        if (orderId == null) {
+            throw new IllegalArgumentException("El orderId no puede ser null");
+        }
+        try {
+            String root = drive.getOrCreateFolder("comprobantes", null);
+            String folder = drive.getOrCreateFolder(String.valueOf(orderId), root);
+            ContentDeduplicator.HashingInputStream hashing = dedup.hashing(in);
+            String driveId = drive.uploadStreamToFolder(hashing, size, filename, mime, folder);
+            dedup.recordUnique();
+            return toDto(persistUpload(null, orderId, filename, mime, size, uploader, driveId, hashing.digests()));
         } catch (Exception e) {
             log.error("Error almacenando comprobante para orden {}: {}", orderId, e.getMessage(), e);
             throw new IOException("Error almacenando comprobante: " + e.getMessage(), e);
         }
     }
 
-    public void streamProductZipFromDrive(Long productId, OutputStream os) throws IOException {
+    private static void applyUpload(StoredFile sf, Long productId, Long orderId, String filename, String mime,
+                                    long size, String uploader, String driveId,
+                                    ContentDeduplicator.Digests digests) {
+        sf.setDriveFileId(driveId);
+        sf.setFilename(filename);
+        if (sf.getOriginalName() == null) {
+            sf.setOriginalName(filename);
+        }
+        sf.setFileType(mime != null ? mime : "application/octet-stream");
+        sf.setSize(size);
+        // Sólo si Drive recibió el cuerpo entero; si no, los hashes no describen el archivo
+        boolean hashed = digests.size() == size;
+        sf.setSha256(hashed ? digests.sha256() : null);
+        sf.setMd5(hashed ? digests.md5() : null);
+        sf.setUploader(uploader != null ? uploader : "public");
+        sf.setUploadedAt(Instant.now());
+        sf.setProductId(productId);
+        sf.setOrderId(orderId);
+    }
+
+    /** Archivo del lote ya subido (o idéntico al existente) pendiente de guardar */
+    private record BatchItem(StoredFile row, boolean changed) { }
+
+    /**
+     * Sube varios archivos de un producto u orden en una sola petición: la carpeta y su listado
+     * se resuelven una vez, los archivos se suben en paralelo (como mucho
+     * {@code batch-upload-concurrency} a la vez) y las filas se guardan juntas al final.
+     * Un archivo que falla no aborta el resto: su resultado lleva el error.
+     */
+    public List<BatchUploadResultDto> storeBatch(List<MultipartFile> files, String uploader,
+                                                 Long entityId, boolean isProduct) throws IOException {
+        if (entityId == null) {
+            throw new IllegalArgumentException("El entityId no puede ser null");
+        }
+        Long productId = isProduct ? entityId : null;
+        Long orderId = isProduct ? null : entityId;
+
+        String root = drive.getOrCreateFolder(isProduct ? "productos" : "comprobantes", null);
+        String folder = drive.getOrCreateFolder(String.valueOf(entityId), root);
+        Map<String, String> driveIds = new HashMap<>();
+        for (DriveFile f : drive.listFilesInFolder(folder)) {
+            driveIds.putIfAbsent(f.getName(), f.getId());
+        }
+        Map<String, StoredFile> rows = new HashMap<>();
+        for (StoredFile sf : isProduct ? repo.findByProductId(entityId) : repo.findByOrderId(entityId)) {
+            rows.putIfAbsent(sf.getFilename(), sf);
+        }
+
+        int concurrency = Math.max(1, props.getBatchUploadConcurrency());
+        List<Future<BatchItem>> futures = new ArrayList<>(files.size());
+        Deque<Future<BatchItem>> inFlight = new ArrayDeque<>(concurrency);
+        Set<String> names = new HashSet<>();
         try {
-            // Usar el método correcto para rutas con "/"
-            String folderPath = "productos/" + productId;
-            String folderId = drive.getOrCreateFolderByPath(folderPath);
-
-            var files = drive.listFilesInFolder(folderId);
-
-            try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(os))) {
-                boolean added = false;
-
-                for (DriveFile f : files) {
-                    added = true;
-                    zos.putNextEntry(new java.util.zip.ZipEntry(f.getName()));
-                    try (InputStream in = drive.downloadFile(f.getId())) {
-                        in.transferTo(zos);
-                    }
-                    zos.closeEntry();
+            for (MultipartFile file : files) {
+                String name = file.getOriginalFilename();
+                if (file.isEmpty() || name == null || name.isBlank() || !names.add(name)) {
+                    futures.add(CompletableFuture.failedFuture(new IllegalArgumentException(
+                            file.isEmpty() ? "El archivo no puede estar vacío" : "Nombre vacío o repetido en el lote")));
+                    continue;
                 }
-
-                if (!added) {
-                    throw new IOException("No hay archivos descargables en carpeta: " + folderPath);
+                if (inFlight.size() == concurrency) {
+                    awaitQuietly(inFlight.poll());
                 }
-                zos.finish();
+                Future<BatchItem> f = driveIo.submit(() -> storeBatchItem(file, folder, driveIds.get(name),
+                        rows.get(name), productId, orderId, uploader));
+                futures.add(f);
+                inFlight.add(f);
+            }
+            for (Future<BatchItem> f : inFlight) {
+                awaitQuietly(f);
+            }
+        } catch (InterruptedIOException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw e;
+        }
+
+        List<StoredFile> changed = new ArrayList<>();
+        for (Future<BatchItem> f : futures) {
+            BatchItem item = resultOrNull(f);
+            if (item != null && item.changed()) {
+                changed.add(item.row());
+            }
+        }
+        if (!changed.isEmpty()) {
+            writer.upsertAll(changed);
+            changed.forEach(sf -> metaCache.invalidate(driveIds.get(sf.getFilename())));
+            zipArtifacts.invalidate(productId);
+        }
+
+        // Releer para devolver los ids generados por los INSERT
+        Map<String, StoredFile> saved = new HashMap<>();
+        for (StoredFile sf : isProduct ? repo.findByProductId(entityId) : repo.findByOrderId(entityId)) {
+            saved.putIfAbsent(sf.getFilename(), sf);
+        }
+        List<BatchUploadResultDto> results = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            String name = files.get(i).getOriginalFilename();
+            try {
+                futures.get(i).get();
+                results.add(BatchUploadResultDto.builder()
+                        .filename(name).success(true).file(toDto(saved.get(name))).build());
+            } catch (ExecutionException e) {
+                log.warn("Lote {} {}: falló '{}': {}", isProduct ? "producto" : "orden", entityId, name,
+                        e.getCause().getMessage());
+                results.add(BatchUploadResultDto.builder()
+                        .filename(name).success(false).error(e.getCause().getMessage()).build());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrumpido esperando el lote");
+            }
+        }
+        return results;
+    }
+
+    private BatchItem storeBatchItem(MultipartFile file, String folderId, String existingFileId,
+                                     StoredFile existingRow, Long productId, Long orderId,
+                                     String uploader) throws IOException {
+        ContentDeduplicator.Digests digests = dedup.digest(file);
+        if (existingRow != null && sameContent(existingRow, digests)) {
+            dedup.recordDuplicate(digests.size());
+            return new BatchItem(existingRow, false);
+        }
+        String driveId = uploadOrCopy(file, folderId, existingFileId, digests, productId, orderId, uploader);
+        StoredFile sf = existingRow != null ? existingRow : new StoredFile();
+        applyUpload(sf, productId, orderId, file.getOriginalFilename(), file.getContentType(),
+                file.getSize(), uploader, driveId, digests);
+        return new BatchItem(sf, true);
+    }
+
+    /** Espera a que termine sin propagar su error: el resultado de cada archivo se lee después */
+    private static void awaitQuietly(Future<?> f) throws InterruptedIOException {
+        try {
+            f.get();
+        } catch (ExecutionException | CancellationException ignored) {
+            // se informa en el resultado de ese archivo
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido esperando el lote");
+        }
+    }
+
+    private static <T> T resultOrNull(Future<T> f) {
+        try {
+            return f.get();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Si el contenido ya está en Drive (otro producto u orden) se copia en el servidor:
+     * la subida duplicada cuesta sólo metadatos. Si la copia falla se sube normalmente.
+     */
+    private String uploadOrCopy(MultipartFile file, String folderId, String existingFileId,
+                                ContentDeduplicator.Digests digests,
+                                Long productId, Long orderId, String uploader) throws IOException {
+        Optional<StoredFile> blob = dedup.findBlob(digests);
+        if (blob.isPresent()) {
+            try {
+                String driveId = drive.copyFileToFolder(blob.get().getDriveFileId(), file.getOriginalFilename(),
+                        folderId, existingFileId);
+                dedup.recordDuplicate(digests.size());
+                log.info("Contenido duplicado de {} ({} bytes): copiado en Drive", blob.get().getDriveFileId(), digests.size());
+                return driveId;
+            } catch (IOException e) {
+                log.warn("No se pudo copiar {} en Drive, se sube de nuevo: {}", blob.get().getDriveFileId(), e.getMessage());
+            }
+        }
+        dedup.recordUnique();
+        return drive.uploadFileReplacing(file, folderId, existingFileId, productId, orderId, uploader);
+    }
+
+    /** La subida pudo dejar otro driveFileId: la caché no debe seguir sirviendo los anteriores */
+    private void forgetReplaced(String existingFileId, Optional<StoredFile> existingRow) {
+        metaCache.invalidate(existingFileId);
+        existingRow.ifPresent(sf -> metaCache.invalidate(sf.getDriveFileId()));
+    }
+
+    private static boolean sameContent(StoredFile sf, ContentDeduplicator.Digests digests) {
+        return digests.sha256().equals(sf.getSha256()) && sf.getSize() != null && sf.getSize() == digests.size();
+    }
+
+    /** Crea o actualiza la fila del archivo ya subido a Drive (mismo nombre = misma fila). */
+    private StoredFile persistUpload(Long productId, Long orderId, String filename, String mime,
+                                     long size, String uploader, String driveId,
+                                     ContentDeduplicator.Digests digests) {
+        StoredFile sf = new StoredFile();
+        applyUpload(sf, productId, orderId, filename, mime, size, uploader, driveId, digests);
+        StoredFile saved = writer.upsert(sf);
+        zipArtifacts.invalidate(productId);
+        return saved;
+    }
+
+    /** ZIP del producto ya materializado en disco, si está vigente (si no, se encarga en segundo plano) */
+    public Optional<ProductZipArtifactStore.ZipArtifact> productZipArtifact(Long productId) {
+        return zipArtifacts.find(productId);
+    }
+
+    /**
+     * ZIP del producto descargado de Drive sobre la marcha. Las entradas salen de {@code stored_files},
+     * igual que en el artefacto materializado: no el listado de la carpeta, que puede tener archivos
+     * sin fila o no tener aún los recién subidos.
+     */
+    public void streamProductZipFromDrive(Long productId, OutputStream os) throws IOException {
+        try {
+            var files = ProductZipBuilder.entries(repo.findByProductId(productId));
+            if (files.isEmpty()) {
+                throw new IOException("No hay archivos descargables del producto " + productId);
             }
+
+            // Descarga las siguientes entradas en paralelo mientras escribe la actual
+            zipBuilder.write(files, os);
         } catch (Exception e) {
             log.error("Error creando ZIP para producto {}: {}", productId, e.getMessage(), e);
             throw new IOException("Error creando ZIP: " + e.getMessage(), e);
@@ -201,6 +483,77 @@ public class FileStorageService {
         return repo.save(sf);
     }
 
+    /** Retoma en segundo plano las subidas reanudables que un reinicio dejó a medias. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedUploads() {
+        resumeInBackground(true);
+    }
+
+    /**
+     * Las sesiones de una instancia que desapareció sólo caducan pasado el arriendo, así que
+     * se buscan periódicamente y no sólo al arrancar.
+     */
+    @Scheduled(fixedDelayString = "${gdrive.upload-session-sweep-ms:60000}",
+            initialDelayString = "${gdrive.upload-session-sweep-ms:60000}")
+    public void resumeAbandonedUploads() {
+        resumeInBackground(false);
+    }
+
+    /** Un solo hilo a la vez: una subida reanudada puede tardar más que el intervalo del barrido */
+    private void resumeInBackground(boolean includeOwn) {
+        if (!resuming.compareAndSet(false, true)) {
+            return;
+        }
+        Thread worker = new Thread(() -> {
+            try {
+                if (includeOwn) {
+                    resumeAll(resumableUploads.pendingSessions());
+                }
+                resumeAll(resumableUploads.takeOverExpiredSessions());
+            } catch (RuntimeException e) {
+                log.warn("No se pudieron buscar subidas reanudables pendientes: {}", e.getMessage());
+            } finally {
+                resuming.set(false);
+            }
+        }, "drive-upload-resume");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void resumeAll(List<UploadSession> pending) {
+        for (UploadSession session : pending) {
+            try {
+                String driveId = resumableUploads.resume(session);
+                registerResumedUpload(session, driveId);
+            } catch (Exception e) {
+                log.warn("No se pudo reanudar la subida {} ({}): {}",
+                        session.getId(), session.getFilename(), e.getMessage());
+            }
+        }
+    }
+
+    private void registerResumedUpload(UploadSession session, String driveId) {
+        if (session.getProductId() == null && session.getOrderId() == null) {
+            return;
+        }
+        StoredFile sf = new StoredFile();
+        sf.setDriveFileId(driveId);
+        sf.setFilename(session.getFilename());
+        sf.setOriginalName(session.getFilename());
+        sf.setFileType(session.getMimeType());
+        sf.setSize(session.getTotalBytes());
+        // La copia local ya se borró: sin hashes, esta fila no participa en la deduplicación
+        sf.setSha256(null);
+        sf.setMd5(null);
+        sf.setUploader(session.getUploader() != null ? session.getUploader() : "public");
+        sf.setUploadedAt(Instant.now());
+        sf.setProductId(session.getProductId());
+        sf.setOrderId(session.getOrderId());
+        writer.upsert(sf);
+        zipArtifacts.invalidate(session.getProductId());
+        log.info("Subida reanudada registrada: {} -> {}", session.getFilename(), driveId);
+    }
+
     public void deleteFile(String driveFileId) throws IOException {
         repo.findByDriveFileId(driveFileId).ifPresent(sf -> {
             try {
@@ -210,17 +563,103 @@ public class FileStorageService {
                 log.warn("No se pudo borrar en Drive {}: {}", driveFileId, e.getMessage());
             }
             repo.delete(sf);
+            metaCache.invalidate(driveFileId);
+            contentCache.invalidate(driveFileId);
+            zipArtifacts.invalidate(sf.getProductId());
             log.info("Archivo eliminado de BD: {}", driveFileId);
         });
     }
 
-    public FileInfoDto toDto(StoredFile sf) {
-        String downloadUri = UriComponentsBuilder
-                .fromHttpUrl(gatewayBaseUrl)
-                .path("/api/files/{driveId}")
-                .buildAndExpand(sf.getDriveFileId())
-                .toUriString();
+    public BulkDeleteResultDto deleteProductFiles(Long productId) throws IOException {
+        List<StoredFile> rows = repo.findByProductId(productId);
+        return deleteRows(rows.stream().map(StoredFile::getDriveFileId).toList(), rows);
+    }
+
+    public BulkDeleteResultDto deleteOrderFiles(Long orderId) throws IOException {
+        List<StoredFile> rows = repo.findByOrderId(orderId);
+        return deleteRows(rows.stream().map(StoredFile::getDriveFileId).toList(), rows);
+    }
+
+    public BulkDeleteResultDto deleteFiles(Collection<String> driveFileIds) throws IOException {
+        return deleteRows(driveFileIds, repo.findByDriveFileIdIn(driveFileIds));
+    }
+
+    /**
+     * Borrado en lote: Drive en batches de hasta 100 y las filas en un solo DELETE. A diferencia de
+     * {@link #deleteFile}, la fila de un archivo que Drive no pudo borrar se conserva para que el
+     * borrado se pueda volver a pedir; uno que ya no estaba en Drive (404) cuenta como borrado.
+     */
+    private BulkDeleteResultDto deleteRows(Collection<String> requested, List<StoredFile> rows) throws IOException {
+        Map<String, StoredFile> byDriveId = new HashMap<>();
+        rows.forEach(sf -> byDriveId.put(sf.getDriveFileId(), sf));
+        Map<String, DriveBatchService.ItemResult> results = driveBatch.delete(byDriveId.keySet());
+
+        List<BulkDeleteItemDto> items = new ArrayList<>();
+        List<StoredFile> gone = new ArrayList<>();
+        for (String driveFileId : new LinkedHashSet<>(requested)) {
+            StoredFile sf = byDriveId.get(driveFileId);
+            DriveBatchService.ItemResult r = sf != null ? results.get(driveFileId) : null;
+            if (sf == null) {
+                items.add(new BulkDeleteItemDto(driveFileId, "not_found", null));
+            } else if (r != null && (r.ok() || r.notFound())) {
+                gone.add(sf);
+                items.add(new BulkDeleteItemDto(driveFileId, "deleted", null));
+            } else {
+                String error = r == null ? "sin respuesta de Drive" : r.code() + " " + r.reason();
+                log.warn("No se pudo borrar en Drive {}: {}", driveFileId, error);
+                items.add(new BulkDeleteItemDto(driveFileId, "failed", error));
+            }
+        }
+
+        writer.deleteAll(gone.stream().map(StoredFile::getDriveFileId).toList());
+        gone.forEach(sf -> contentCache.invalidate(sf.getDriveFileId()));
+        gone.stream().map(StoredFile::getProductId).distinct().forEach(zipArtifacts::invalidate);
+        int failed = (int) items.stream().filter(i -> "failed".equals(i.getStatus())).count();
+        log.info("Borrado en lote: {} pedidos, {} eliminados, {} fallidos", items.size(), gone.size(), failed);
+        return BulkDeleteResultDto.builder().deleted(gone.size()).failed(failed).items(items).build();
+    }
 
+    public List<ReconcileItemDto> reconcileProduct(Long productId) throws IOException {
+        return reconcile(repo.findByProductId(productId));
+    }
+
+    public List<ReconcileItemDto> reconcileOrder(Long orderId) throws IOException {
+        return reconcile(repo.findByOrderId(orderId));
+    }
+
+    /** Compara tamaño y md5 de cada fila con los metadatos de Drive, pedidos en batches */
+    private List<ReconcileItemDto> reconcile(List<StoredFile> rows) throws IOException {
+        Map<String, DriveBatchService.ItemResult> results =
+                driveBatch.metadata(rows.stream().map(StoredFile::getDriveFileId).toList());
+        List<ReconcileItemDto> items = new ArrayList<>(rows.size());
+        for (StoredFile sf : rows) {
+            DriveBatchService.ItemResult r = results.get(sf.getDriveFileId());
+            ReconcileItemDto.ReconcileItemDtoBuilder item = ReconcileItemDto.builder()
+                    .driveFileId(sf.getDriveFileId())
+                    .filename(sf.getFilename())
+                    .storedSize(sf.getSize())
+                    .storedMd5(sf.getMd5());
+            if (r != null && r.ok() && r.file() != null) {
+                File f = r.file();
+                boolean sizeMatches = f.getSize() == null || f.getSize().equals(sf.getSize());
+                boolean md5Matches = sf.getMd5() == null || f.getMd5Checksum() == null
+                        || sf.getMd5().equalsIgnoreCase(f.getMd5Checksum());
+                item.status(sizeMatches && md5Matches ? "ok" : "mismatch")
+                        .driveSize(f.getSize())
+                        .driveMd5(f.getMd5Checksum())
+                        .driveModifiedTime(f.getModifiedTime() != null
+                                ? Instant.ofEpochMilli(f.getModifiedTime().getValue()) : null);
+            } else if (r != null && r.notFound()) {
+                item.status("missing");
+            } else {
+                item.status("failed").error(r == null ? "sin respuesta de Drive" : r.code() + " " + r.reason());
+            }
+            items.add(item.build());
+        }
+        return items;
+    }
+
+    public FileInfoDto toDto(StoredFile sf) {
         return FileInfoDto.builder()
                 .id(sf.getId())
                 .driveFileId(sf.getDriveFileId())
@@ -229,7 +668,42 @@ public class FileStorageService {
                 .fileType(sf.getFileType())
                 .size(sf.getSize())
                 .uploader(sf.getUploader())
-                .downloadUri(downloadUri)
+                .downloadUri(downloadUris.forDriveId(sf.getDriveFileId()))
                 .build();
     }
+
+    public FileInfoDto toDto(StoredFileMeta m) {
+        return FileInfoDto.builder()
+                .id(m.getId())
+                .driveFileId(m.getDriveFileId())
+                .filename(m.getFilename())
+                .originalName(m.getOriginalName())
+                .fileType(m.getFileType())
+                .size(m.getSize())
+                .uploader(m.getUploader())
+                .downloadUri(downloadUris.forDriveId(m.getDriveFileId()))
+                .build();
+    }
+
+    /**
+     * Metadatos de varios productos y órdenes: una consulta IN por tipo de dueño, agrupada por id.
+     * Cada id pedido aparece en el resultado, con lista vacía si no tiene archivos.
+     */
+    public FileMetaBatchDto metadataFor(Collection<Long> productIds, Collection<Long> orderIds) {
+        Map<Long, List<FileInfoDto>> products = new LinkedHashMap<>();
+        productIds.forEach(id -> products.put(id, new ArrayList<>()));
+        if (!productIds.isEmpty()) {
+            for (StoredFileMeta m : repo.findByProductIdIn(productIds)) {
+                products.get(m.getProductId()).add(toDto(m));
+            }
+        }
+        Map<Long, List<FileInfoDto>> orders = new LinkedHashMap<>();
+        orderIds.forEach(id -> orders.put(id, new ArrayList<>()));
+        if (!orderIds.isEmpty()) {
+            for (StoredFileMeta m : repo.findByOrderIdIn(orderIds)) {
+                orders.get(m.getOrderId()).add(toDto(m));
+            }
+        }
+        return FileMetaBatchDto.builder().products(products).orders(orders).build();
+    }
 }
\ No newline at end of file
@@ -2,7 +2,12 @@ package com.aec.FileSrv.service;
 
 import com.aec.FileSrv.config.DriveProperties;
 import com.aec.FileSrv.controller.FileController;
+import com.aec.FileSrv.drive.DriveContentCache;
 import com.aec.FileSrv.drive.DriveFile;
+import com.aec.FileSrv.drive.DriveFolderCache;
+import com.aec.FileSrv.drive.DriveGovernor;
+import com.aec.FileSrv.drive.DriveMetrics;
+import com.aec.FileSrv.drive.DriveMetrics.Kind;
 import com.google.api.client.http.FileContent;
 import com.google.api.client.http.InputStreamContent;
 import com.google.api.services.drive.Drive;
@@ -19,6 +24,7 @@ import com.google.api.services.drive.model.FileList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -32,6 +38,11 @@ import java.util.List;
 public class GoogleDriveService {
     private final Drive drive;
     private final DriveProperties props;
+    private final DriveFolderCache folderCache;
+    private final ResumableUploadService resumableUploads;
+    private final DriveContentCache contentCache;
+    private final DriveMetrics metrics;
+    private final DriveGovernor governor;
     private final Logger log = LoggerFactory.getLogger(GoogleDriveService.class); // Cambiado aquí
 
     public String uploadFile(MultipartFile file, boolean isProduct) throws IOException {
@@ -46,14 +57,19 @@ public class GoogleDriveService {
         metadata.setName(name);
         metadata.setParents(Collections.singletonList(parentId));
 
-        try (InputStream in = file.getInputStream()) {
-            InputStreamContent media = new InputStreamContent(
-                    ctype != null ? ctype : "application/octet-stream", in);
-
-            File created = drive.files()
-                    .create(metadata, media)
-                    .setFields("id,name,mimeType,size,webViewLink,webContentLink,parents")
-                    .execute();
+        try {
+            // El contenido se abre en cada intento: tras un rechazo por cuota se reenvía entero
+            File created = governor.call("files.create", Kind.TRANSFER, () -> {
+                try (InputStream in = file.getInputStream()) {
+                    InputStreamContent media = new InputStreamContent(
+                            ctype != null ? ctype : "application/octet-stream", in);
+                    return drive.files()
+                            .create(metadata, media)
+                            .setFields("id,name,mimeType,size,webViewLink,webContentLink,parents")
+                            .execute();
+                }
+            });
+            metrics.recordUploaded(file.getSize());
 
             log.info("Drive.create OK -> id={}, name={}, mimeType={}, size={}, parents={}",
                     created.getId(), created.getName(), created.getMimeType(),
@@ -68,22 +84,19 @@ public class GoogleDriveService {
     }
 
     public InputStream downloadFile(String fileId) throws IOException {
-        return drive.files().get(fileId).executeMediaAsInputStream();
+        return metrics.countDownload(governor.call("files.get.media", Kind.TRANSFER,
+                () -> drive.files().get(fileId).executeMediaAsInputStream()));
     }
 
-    public List<File> listFiles(boolean isProduct, int pageSize) throws IOException {
-        String q = "'" + (isProduct ? props.getFolderProductId() : props.getFolderReceiptId())
-                + "' in parents and trashed=false";
-        return drive.files().list()
-                .setQ(q)
-                .setPageSize(pageSize)
-                .setFields("files(id, name, mimeType, size, webViewLink)")
-                .execute()
-                .getFiles();
+    /** Descarga sólo los bytes [start, end] (ambos inclusive) con un GET ranged a Drive */
+    public InputStream downloadRange(String fileId, long start, long end) throws IOException {
+        Drive.Files.Get get = drive.files().get(fileId);
+        get.getRequestHeaders().setRange("bytes=" + start + "-" + end);
+        return metrics.countDownload(governor.call("files.get.media", Kind.TRANSFER, get::executeMediaAsInputStream));
     }
 
     public void deleteFile(String fileId) throws IOException {
-        drive.files().delete(fileId).execute();
+        governor.call("files.delete", Kind.METADATA, () -> drive.files().delete(fileId).execute());
     }
 
     // MÉTODO PRINCIPAL: Crear/obtener folder por nombre y parent
@@ -91,7 +104,11 @@ public class GoogleDriveService {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("El nombre del folder no puede estar vacío");
         }
+        // Caché + single-flight: evita los files.list repetidos y las carpetas duplicadas por carreras
+        return folderCache.get(name, parentId, () -> lookupOrCreateFolder(name, parentId));
+    }
 
+    private String lookupOrCreateFolder(String name, String parentId) throws IOException {
         StringBuilder q = new StringBuilder();
         q.append("mimeType = 'application/vnd.google-apps.folder' ");
         q.append("and name = '").append(name.replace("'", "\\'")).append("' ");
@@ -101,11 +118,11 @@ public class GoogleDriveService {
         }
 
         try {
-            FileList result = drive.files().list()
+            FileList result = governor.call("folders.list", Kind.METADATA, () -> drive.files().list()
                     .setQ(q.toString())
                     .setFields("files(id,name)")
                     .setPageSize(1)
-                    .execute();
+                    .execute());
 
             if (result.getFiles() != null && !result.getFiles().isEmpty()) {
                 String folderId = result.getFiles().get(0).getId();
@@ -121,9 +138,9 @@ public class GoogleDriveService {
                 folder.setParents(java.util.List.of(parentId));
             }
 
-            File created = drive.files().create(folder)
+            File created = governor.call("folders.create", Kind.METADATA, () -> drive.files().create(folder)
                     .setFields("id")
-                    .execute();
+                    .execute());
 
             log.info("Folder '{}' creado con ID: {}", name, created.getId());
             return created.getId();
@@ -150,64 +167,186 @@ public class GoogleDriveService {
     }
 
     public String uploadFileToFolder(MultipartFile multipart, String folderId) throws IOException {
+        return uploadFileToFolder(multipart, folderId, null, null, null);
+    }
+
+    /**
+     * Igual que {@link #uploadFileToFolder(MultipartFile, String)}; el dueño (producto/orden y uploader)
+     * se guarda con la sesión reanudable para poder registrar el archivo si la subida termina tras un reinicio.
+     */
+    public String uploadFileToFolder(MultipartFile multipart, String folderId,
+                                     Long productId, Long orderId, String uploader) throws IOException {
         if (multipart == null || multipart.isEmpty()) {
             throw new IllegalArgumentException("El archivo no puede estar vacío");
         }
 
-        String filename = multipart.getOriginalFilename();
+        // Buscar si el archivo ya existe en la carpeta de Drive
+        String existingFileId = findFileInFolder(folderId, uploadName(multipart));
+        return uploadFileReplacing(multipart, folderId, existingFileId, productId, orderId, uploader);
+    }
+
+    /**
+     * Sube {@code multipart} a la carpeta sabiendo ya si existe un archivo con ese nombre
+     * ({@code existingFileId}, o null): las subidas por lotes lo resuelven con un único listado.
+     */
+    public String uploadFileReplacing(MultipartFile multipart, String folderId, String existingFileId,
+                                      Long productId, Long orderId, String uploader) throws IOException {
+        String filename = uploadName(multipart);
+        String mime = multipart.getContentType();
+        if (mime == null) {
+            mime = "application/octet-stream";
+        }
+
+        if (existingFileId != null) {
+            // Se va a reemplazar en sitio: la copia local deja de ser válida
+            contentCache.invalidate(existingFileId);
+        }
+
+        if (resumableUploads.shouldUseResumable(multipart.getSize())) {
+            try {
+                return resumableUploads.upload(multipart, folderId, existingFileId, filename, mime,
+                        productId, orderId, uploader);
+            } catch (Exception e) {
+                log.error("Error en subida reanudable '{}' a folder '{}': {}", filename, folderId, e.getMessage(), e);
+                throw new IOException("Error subiendo archivo: " + e.getMessage(), e);
+            }
+        }
+
+        return uploadSimple(multipart, true, multipart.getSize(), folderId, existingFileId, filename, mime);
+    }
+
+    /**
+     * Sube el cuerpo de la petición directamente a Drive mientras va llegando, sin pasar por
+     * el parser multipart ni por un temporal en disco. {@code size} debe ser exacto (Content-Length).
+     */
+    public String uploadStreamToFolder(InputStream in, long size, String filename, String mime,
+                                       String folderId) throws IOException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("El archivo no puede estar vacío");
+        }
         if (filename == null || filename.trim().isEmpty()) {
             filename = "file_" + System.currentTimeMillis();
         }
-        
-        String mime = multipart.getContentType();
         if (mime == null) {
             mime = "application/octet-stream";
         }
 
-        // Buscar si el archivo ya existe en la carpeta de Drive
         String existingFileId = findFileInFolder(folderId, filename);
+        if (existingFileId != null) {
+            contentCache.invalidate(existingFileId);
+        }
 
+        if (resumableUploads.shouldUseResumable(size)) {
+            try {
+                return resumableUploads.uploadStream(in, size, folderId, existingFileId, filename, mime);
+            } catch (Exception e) {
+                log.error("Error en subida reanudable '{}' a folder '{}': {}", filename, folderId, e.getMessage(), e);
+                throw new IOException("Error subiendo archivo: " + e.getMessage(), e);
+            }
+        }
+        // El cuerpo de la petición sólo se puede leer una vez: sin reintentos
+        return uploadSimple(() -> in, false, size, folderId, existingFileId, filename, mime);
+    }
+
+    /**
+     * Copia en el servidor de Drive un archivo ya existente a {@code folderId} con otro nombre,
+     * sin transferir bytes. Si en la carpeta ya hay un archivo con ese nombre se sustituye,
+     * igual que hace la subida normal ({@code existingFileId}, o null si no lo hay).
+     */
+    public String copyFileToFolder(String sourceFileId, String filename, String folderId,
+                                   String existingFileId) throws IOException {
+        if (sourceFileId.equals(existingFileId)) {
+            return existingFileId;
+        }
         File metadata = new File()
                 .setName(filename)
                 .setParents(List.of(folderId));
+        File copy = governor.call("files.copy", Kind.METADATA,
+                () -> drive.files().copy(sourceFileId, metadata).setFields("id").execute());
+        log.info("Drive.copy OK -> id={}, name={}, origen={}", copy.getId(), filename, sourceFileId);
+
+        if (existingFileId != null) {
+            contentCache.invalidate(existingFileId);
+            try {
+                deleteFile(existingFileId);
+            } catch (IOException e) {
+                log.warn("No se pudo borrar el archivo reemplazado {}: {}", existingFileId, e.getMessage());
+            }
+        }
+        return copy.getId();
+    }
 
-        try (InputStream in = multipart.getInputStream()) {
-            InputStreamContent mediaContent = new InputStreamContent(mime, in);
-            mediaContent.setLength(multipart.getSize());
+    /** {@code replayable}: {@code content} puede abrirse otra vez para reintentar la subida */
+    private String uploadSimple(InputStreamSource content, boolean replayable, long size, String folderId,
+                                String existingFileId, String filename, String mime) throws IOException {
+        File metadata = new File()
+                .setName(filename)
+                .setParents(List.of(folderId));
 
+        try {
             File uploaded;
             if (existingFileId != null) {
                 // Actualizar el archivo existente
-                uploaded = drive.files()
-                        .update(existingFileId, metadata, mediaContent)
-                        .setFields("id")
-                        .execute();
+                uploaded = upload("files.update", replayable, () -> {
+                    try (InputStream in = content.getInputStream()) {
+                        return drive.files()
+                                .update(existingFileId, metadata, new InputStreamContent(mime, in).setLength(size))
+                                .setFields("id")
+                                .execute();
+                    }
+                });
                 log.info("Drive.update OK -> id={}, name={}", uploaded.getId(), filename);
             } else {
                 // Crear un nuevo archivo
-                uploaded = drive.files()
-                        .create(metadata, mediaContent)
-                        .setFields("id")
-                        .execute();
+                uploaded = upload("files.create", replayable, () -> {
+                    try (InputStream in = content.getInputStream()) {
+                        return drive.files()
+                                .create(metadata, new InputStreamContent(mime, in).setLength(size))
+                                .setFields("id")
+                                .execute();
+                    }
+                });
                 log.info("Drive.create OK -> id={}, name={}", uploaded.getId(), filename);
             }
+            metrics.recordUploaded(size);
 
             return uploaded.getId();
         } catch (Exception e) {
+            if (e instanceof com.google.api.client.googleapis.json.GoogleJsonResponseException gje
+                    && gje.getStatusCode() == 404) {
+                // La carpeta cacheada ya no existe en Drive: la próxima llamada la vuelve a resolver
+                folderCache.invalidateFolderId(folderId);
+            }
             log.error("Error subiendo archivo '{}' a folder '{}': {}", filename, folderId, e.getMessage(), e);
             throw new IOException("Error subiendo archivo: " + e.getMessage(), e);
         }
     }
 
+    private File upload(String operation, boolean replayable, DriveMetrics.DriveCall<File> call) throws IOException {
+        return replayable
+                ? governor.call(operation, Kind.TRANSFER, call)
+                : governor.callOnce(operation, Kind.TRANSFER, call);
+    }
+
     // Buscar un archivo por nombre en una carpeta específica
-    private String findFileInFolder(String folderId, String filename) throws IOException {
+    /** Nombre con el que se guarda en Drive: el original o, si no viene, uno generado */
+    private static String uploadName(MultipartFile multipart) {
+        String filename = multipart.getOriginalFilename();
+        if (filename == null || filename.trim().isEmpty()) {
+            filename = "file_" + System.currentTimeMillis();
+        }
+        return filename;
+    }
+
+    /** ID del archivo con ese nombre dentro de la carpeta, o null si no hay ninguno */
+    public String findFileInFolder(String folderId, String filename) throws IOException {
         String q = "'" + folderId + "' in parents and name='" + filename.replace("'", "\\'") + "' and trashed=false";
         try {
-            FileList result = drive.files().list()
+            FileList result = governor.call("files.list", Kind.METADATA, () -> drive.files().list()
                     .setQ(q)
                     .setFields("files(id)")
                     .setPageSize(1)
-                    .execute();
+                    .execute());
             if (result.getFiles() != null && !result.getFiles().isEmpty()) {
                 return result.getFiles().get(0).getId();
             }
@@ -222,10 +361,10 @@ public class GoogleDriveService {
         String q = "'" + parentId + "' in parents and mimeType='application/vnd.google-apps.folder' " +
                 "and name='" + name.replace("'", "\\'") + "' and trashed=false";
         try {
-            FileList result = drive.files().list()
+            FileList result = governor.call("folders.list", Kind.METADATA, () -> drive.files().list()
                     .setQ(q)
                     .setFields("files(id, name)")
-                    .execute();
+                    .execute());
             if (result.getFiles() == null || result.getFiles().isEmpty())
                 return null;
             return result.getFiles().get(0).getId();
@@ -240,9 +379,9 @@ public class GoogleDriveService {
                 .setName(name)
                 .setMimeType("application/vnd.google-apps.folder")
                 .setParents(List.of(parentId));
-        File folder = drive.files().create(metadata)
+        File folder = governor.call("folders.create", Kind.METADATA, () -> drive.files().create(metadata)
                 .setFields("id")
-                .execute();
+                .execute());
         return folder.getId();
     }
 
@@ -254,11 +393,12 @@ public class GoogleDriveService {
         List<DriveFile> out = new ArrayList<>();
         String pageToken = null;
         do {
-            FileList result = drive.files().list()
+            String page = pageToken;
+            FileList result = governor.call("files.list", Kind.METADATA, () -> drive.files().list()
                     .setQ(q)
                     .setFields("nextPageToken, files(id, name, mimeType, size)")
-                    .setPageToken(pageToken)
-                    .execute();
+                    .setPageToken(page)
+                    .execute());
 
             if (result.getFiles() != null) {
                 for (File f : result.getFiles()) {
@@ -290,17 +430,19 @@ public class GoogleDriveService {
                 .setName(filename)
                 .setParents(List.of(folderId));
 
-        try (InputStream in = multipart.getInputStream()) {
-            InputStreamContent mediaContent = new InputStreamContent(mime, in);
-            mediaContent.setLength(multipart.getSize());
-
-            File uploaded = drive.files()
-                    .create(metadata, mediaContent)
-                    .setFields("id")
-                    .execute();
+        File uploaded = governor.call("files.create", Kind.TRANSFER, () -> {
+            try (InputStream in = multipart.getInputStream()) {
+                InputStreamContent mediaContent = new InputStreamContent(mime, in);
+                mediaContent.setLength(multipart.getSize());
+                return drive.files()
+                        .create(metadata, mediaContent)
+                        .setFields("id")
+                        .execute();
+            }
+        });
+        metrics.recordUploaded(multipart.getSize());
 
-            log.info("Archivo subido directamente: {} -> {}", filename, uploaded.getId());
-            return uploaded.getId();
-        }
+        log.info("Archivo subido directamente: {} -> {}", filename, uploaded.getId());
+        return uploaded.getId();
     }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.aec.FileSrv.service;
 
+import com.aec.FileSrv.config.GoogleHttpProperties;
+import com.aec.FileSrv.config.GoogleHttpTransportConfig;
 import com.aec.FileSrv.config.OAuthProperties;
 import com.aec.FileSrv.model.OAuthToken;
 import com.aec.FileSrv.Repository.OAuthTokenRepository;
@@ -8,33 +10,57 @@ import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeReque
 import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
 import com.google.api.client.googleapis.auth.oauth2.GoogleRefreshTokenRequest;
 import com.google.api.client.googleapis.auth.oauth2.GoogleTokenResponse;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.services.drive.DriveScopes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.security.GeneralSecurityException;
 import java.time.Instant;
 import java.util.Collections;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class GoogleOAuthService {
     private static final String PROVIDER_KEY = "google-drive";
+    /** Margen mínimo de vigencia para entregar un token a una petición */
+    private static final long EXPIRY_MARGIN_MS = 60_000;
+
+    /**
+     * Copia inmutable del token vigente. La BD es sólo almacenamiento durable: el camino
+     * caliente (una lectura volatile por petición a Drive) nunca abre una transacción.
+     */
+    private record TokenSnapshot(String accessToken, String refreshToken, long expiresAtMillis) {
+        boolean validFor(long marginMs) {
+            return accessToken != null && expiresAtMillis - System.currentTimeMillis() > marginMs;
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(GoogleOAuthService.class);
 
     private final OAuthProperties props;
     private final OAuthTokenRepository repo;
-    private final NetHttpTransport httpTransport;
+    private final HttpTransport httpTransport;
+    private final HttpRequestInitializer timeouts;
     private final JacksonFactory jsonFactory = JacksonFactory.getDefaultInstance();
+    /** Garantiza como máximo un refresco en curso */
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile TokenSnapshot snapshot;
 
-    public GoogleOAuthService(OAuthProperties props, OAuthTokenRepository repo) throws GeneralSecurityException, IOException {
+    /** {@code httpTransport}: el mismo pool que usa el cliente Drive */
+    public GoogleOAuthService(OAuthProperties props, OAuthTokenRepository repo,
+                              HttpTransport httpTransport, GoogleHttpProperties httpProps) {
         this.props = props;
         this.repo = repo;
-        this.httpTransport = GoogleNetHttpTransport.newTrustedTransport();
+        this.httpTransport = httpTransport;
+        this.timeouts = GoogleHttpTransportConfig.timeouts(httpProps);
     }
 
     private GoogleClientSecrets clientSecrets() throws IOException {
@@ -55,6 +81,7 @@ public class GoogleOAuthService {
                 httpTransport, jsonFactory, clientSecrets(), Collections.singleton(DriveScopes.DRIVE))
             .setAccessType("offline")
             .setApprovalPrompt("force")
+            .setRequestInitializer(timeouts)
             .build();
     }
 
@@ -89,28 +116,98 @@ public class GoogleOAuthService {
         }
         tok.setExpiresAt(expiresAt);
         repo.save(tok);
+        publish(tok);
     }
 
-    @Transactional
     public String ensureValidAccessToken() throws IOException {
+        return currentAccessToken();
+    }
+
+    /** Token para la cabecera Authorization; sólo bloquea si el snapshot en memoria ya no sirve. */
+    public String currentAccessToken() throws IOException {
+        TokenSnapshot s = snapshot;
+        if (s != null && s.validFor(EXPIRY_MARGIN_MS)) {
+            return s.accessToken();
+        }
+        refreshLock.lock();
+        try {
+            // Otro hilo pudo haber refrescado mientras esperábamos el lock
+            s = currentOrStored();
+            if (s.validFor(EXPIRY_MARGIN_MS)) {
+                return s.accessToken();
+            }
+            return refresh(s).accessToken();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /** Renueva el token antes de {@code expiresAt} para que ninguna petición espere al refresco. */
+    @Scheduled(fixedDelayString = "${google.oauth.refresh-check-ms:30000}",
+               initialDelayString = "${google.oauth.refresh-check-ms:30000}")
+    public void refreshBeforeExpiry() {
+        long aheadMs = props.getRefreshAhead().toMillis();
+        TokenSnapshot s = snapshot;
+        if (s != null && s.validFor(aheadMs)) {
+            return;
+        }
+        if (!refreshLock.tryLock()) {
+            return; // ya hay un refresco en curso
+        }
+        try {
+            s = snapshot != null ? snapshot : repo.findByProviderKey(PROVIDER_KEY).map(this::publish).orElse(null);
+            if (s == null || s.validFor(aheadMs)) {
+                return;
+            }
+            refresh(s);
+            log.info("Access token de Google renovado de forma proactiva");
+        } catch (Exception e) {
+            log.warn("No se pudo renovar el access token de forma proactiva: {}", e.getMessage());
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    // Debe llamarse con refreshLock tomado
+    private TokenSnapshot currentOrStored() {
+        TokenSnapshot s = snapshot;
+        if (s != null) {
+            return s;
+        }
         OAuthToken tok = repo.findByProviderKey(PROVIDER_KEY)
             .orElseThrow(() -> new IllegalStateException("No hay tokens almacenados. Realiza el flujo OAuth2 primero."));
+        return publish(tok);
+    }
 
-        if (tok.getExpiresAt() != null && tok.getExpiresAt().isAfter(Instant.now().plusSeconds(60))) {
-            return tok.getAccessToken();
-        }
-        if (tok.getRefreshToken() == null || tok.getRefreshToken().isBlank()) {
+    // Debe llamarse con refreshLock tomado
+    private TokenSnapshot refresh(TokenSnapshot current) throws IOException {
+        if (current.refreshToken() == null || current.refreshToken().isBlank()) {
             throw new IllegalStateException("No hay refresh token. Repite el consentimiento OAuth.");
         }
         GoogleTokenResponse refreshed = new GoogleRefreshTokenRequest(
                 httpTransport, jsonFactory,
-                tok.getRefreshToken(), props.getClientId(), props.getClientSecret())
+                current.refreshToken(), props.getClientId(), props.getClientSecret())
+            .setRequestInitializer(timeouts)
             .execute();
 
+        OAuthToken tok = repo.findByProviderKey(PROVIDER_KEY).orElseGet(OAuthToken::new);
+        tok.setProviderKey(PROVIDER_KEY);
         tok.setAccessToken(refreshed.getAccessToken());
+        tok.setRefreshToken(refreshed.getRefreshToken() != null && !refreshed.getRefreshToken().isBlank()
+            ? refreshed.getRefreshToken()
+            : current.refreshToken());
         Long exp = refreshed.getExpiresInSeconds();
         tok.setExpiresAt(exp != null ? Instant.now().plusSeconds(exp) : Instant.now().plusSeconds(3300));
         repo.save(tok);
-        return tok.getAccessToken();
+        return publish(tok);
+    }
+
+    private TokenSnapshot publish(OAuthToken tok) {
+        TokenSnapshot s = new TokenSnapshot(
+            tok.getAccessToken(),
+            tok.getRefreshToken(),
+            tok.getExpiresAt() != null ? tok.getExpiresAt().toEpochMilli() : 0L);
+        snapshot = s;
+        return s;
     }
 }
\ No newline at end of file
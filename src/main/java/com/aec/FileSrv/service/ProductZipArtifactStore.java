@@ -0,0 +1,253 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.Repository.StoredFileRepository;
+import com.aec.FileSrv.config.FileServiceProperties;
+import com.aec.FileSrv.drive.DriveFile;
+import com.aec.FileSrv.model.StoredFile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * ZIPs de producto ya construidos y guardados en disco local, para no rehacerlos desde Drive
+ * en cada descarga.
+ *
+ * Cada artefacto lleva la huella de las filas de {@code stored_files} del producto: si otra réplica
+ * sube, reemplaza o borra un archivo, la huella cambia y el artefacto viejo deja de servirse
+ * aunque esta réplica no haya recibido la invalidación.
+ */
+@Component
+@Slf4j
+public class ProductZipArtifactStore {
+
+    public enum Mode { OFF, ON_DEMAND, EAGER }
+
+    /**
+     * Artefacto publicado; {@code fingerprint} y {@code builtAtMillis} forman su ETag. La huella sola
+     * no basta para un ETag fuerte: las entradas del ZIP llevan la hora de construcción, así que
+     * dos construcciones con la misma huella no son idénticas byte a byte (y un If-Range mezclaría
+     * rangos de ambas).
+     */
+    public record ZipArtifact(Long productId, String fingerprint, Path path, long size, long builtAtMillis) {
+        public String etag() {
+            return "\"zip-" + productId + "-" + fingerprint + "-" + Long.toHexString(builtAtMillis) + "\"";
+        }
+    }
+
+    private final StoredFileRepository repo;
+    private final ProductZipBuilder zipBuilder;
+    private final Mode mode;
+    private final Path dir;
+    private final long maxBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Long, ZipArtifact> artifacts = new LinkedHashMap<>(64, 0.75f, true);
+    private long currentBytes;
+    private final Map<Long, Boolean> building = new ConcurrentHashMap<>();
+    /**
+     * Las construcciones usan su propio hilo (el pool de Drive lo ocupan sus descargas en paralelo);
+     * el mismo hilo borra con retraso los artefactos retirados, por si aún se están enviando por sendfile.
+     */
+    private final ScheduledExecutorService builder = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "zip-artifact-builder");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public ProductZipArtifactStore(StoredFileRepository repo, ProductZipBuilder zipBuilder,
+                                   FileServiceProperties props, MeterRegistry registry) throws IOException {
+        this.repo = repo;
+        this.zipBuilder = zipBuilder;
+        this.mode = props.getZipArtifactMode();
+        this.dir = Path.of(props.getZipArtifactDir()).toAbsolutePath();
+        this.maxBytes = props.getZipArtifactMaxSize().toBytes();
+
+        this.hits = Counter.builder("files.zip.artifact.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("files.zip.artifact.requests").tag("result", "miss").register(registry);
+        this.evictions = Counter.builder("files.zip.artifact.evictions").register(registry);
+        Gauge.builder("files.zip.artifact.size", this, ProductZipArtifactStore::currentBytes)
+                .baseUnit("bytes").register(registry);
+
+        if (mode != Mode.OFF) {
+            Files.createDirectories(dir);
+            // Los artefactos de una ejecución anterior no tienen índice fiable: se descartan
+            try (Stream<Path> s = Files.list(dir)) {
+                for (Path p : s.toList()) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Artefacto vigente del producto. Si no existe se encarga su construcción en segundo plano
+     * y quien llama sirve el ZIP en streaming como hasta ahora.
+     */
+    public Optional<ZipArtifact> find(Long productId) {
+        if (mode == Mode.OFF) {
+            return Optional.empty();
+        }
+        String fingerprint = fingerprint(repo.findByProductId(productId));
+        lock.lock();
+        try {
+            ZipArtifact a = artifacts.get(productId);
+            if (a != null && a.fingerprint().equals(fingerprint)) {
+                hits.increment();
+                return Optional.of(a);
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        scheduleBuild(productId);
+        return Optional.empty();
+    }
+
+    /** Se llama tras subir, reemplazar o borrar cualquier archivo de productos/{productId}. */
+    public void invalidate(Long productId) {
+        if (mode == Mode.OFF || productId == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            ZipArtifact a = artifacts.remove(productId);
+            if (a != null) {
+                currentBytes -= a.size();
+                deleteQuietly(a.path());
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (mode == Mode.EAGER) {
+            scheduleBuild(productId);
+        }
+    }
+
+    public long currentBytes() {
+        lock.lock();
+        try {
+            return currentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scheduleBuild(Long productId) {
+        if (building.putIfAbsent(productId, Boolean.TRUE) != null) {
+            return; // ya hay una construcción en cola o en curso
+        }
+        builder.execute(() -> {
+            try {
+                build(productId);
+            } catch (Exception e) {
+                log.warn("No se pudo construir el ZIP del producto {}: {}", productId, e.getMessage());
+            } finally {
+                building.remove(productId);
+            }
+        });
+    }
+
+    private void build(Long productId) throws IOException {
+        // El contenido sale de las mismas filas que la huella: si algo cambia durante la construcción,
+        // la huella de BD ya no coincidirá y el artefacto nunca se servirá. Con un listado de Drive
+        // aparte, un cambio entre la consulta y el listado daría un ZIP distinto con huella válida.
+        List<StoredFile> rows = repo.findByProductId(productId);
+        String fingerprint = fingerprint(rows);
+        List<DriveFile> files = ProductZipBuilder.entries(rows);
+        if (files.isEmpty()) {
+            return;
+        }
+
+        Path tmp = Files.createTempFile(dir, "zip-" + productId + "-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                zipBuilder.write(files, out);
+            }
+            long builtAt = System.currentTimeMillis();
+            // Nombre único: un borrado diferido de un artefacto anterior nunca alcanza al nuevo
+            Path target = dir.resolve(productId + "-" + fingerprint + "-" + Long.toHexString(builtAt) + ".zip");
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            publish(new ZipArtifact(productId, fingerprint, target, Files.size(target), builtAt));
+            log.info("ZIP del producto {} materializado ({} archivos)", productId, files.size());
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void publish(ZipArtifact artifact) {
+        lock.lock();
+        try {
+            ZipArtifact previous = artifacts.put(artifact.productId(), artifact);
+            if (previous != null) {
+                currentBytes -= previous.size();
+                deleteQuietly(previous.path());
+            }
+            currentBytes += artifact.size();
+            Iterator<Map.Entry<Long, ZipArtifact>> it = artifacts.entrySet().iterator();
+            while (currentBytes > maxBytes && it.hasNext()) {
+                ZipArtifact lru = it.next().getValue();
+                it.remove();
+                currentBytes -= lru.size();
+                deleteQuietly(lru.path());
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static String fingerprint(List<StoredFile> rows) {
+        long h = 1125899906842597L;
+        for (StoredFile sf : rows.stream().sorted(Comparator.comparing(StoredFile::getDriveFileId)).toList()) {
+            h = 31 * h + sf.getDriveFileId().hashCode();
+            h = 31 * h + (sf.getUploadedAt() != null ? sf.getUploadedAt().toEpochMilli() : 0);
+            h = 31 * h + (sf.getSize() != null ? sf.getSize() : 0);
+        }
+        return Long.toHexString(h) + Integer.toHexString(rows.size());
+    }
+
+    private void deleteQuietly(Path p) {
+        builder.schedule(() -> {
+            try {
+                Files.deleteIfExists(p);
+            } catch (IOException e) {
+                log.warn("No se pudo borrar el artefacto {}: {}", p, e.getMessage());
+            }
+        }, 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+}
@@ -0,0 +1,191 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.config.DriveIoExecutor;
+import com.aec.FileSrv.config.FileServiceProperties;
+import com.aec.FileSrv.drive.DriveFile;
+import com.aec.FileSrv.model.StoredFile;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Escribe un ZIP con los archivos de Drive dados, descargando en paralelo las próximas N entradas
+ * mientras se escribe la actual. El orden de las entradas es siempre el de la lista.
+ *
+ * Memoria acotada: como mucho N entradas en vuelo, y las mayores que
+ * {@code zip-prefetch-memory-per-entry} se vuelcan a un temporal en disco.
+ */
+@Component
+@Slf4j
+public class ProductZipBuilder {
+
+    private final GoogleDriveService drive;
+    private final DriveIoExecutor executor;
+    private final int concurrency;
+    private final long memoryPerEntry;
+    private final Timer buildTimer;
+    private final Timer firstByteTimer;
+
+    public ProductZipBuilder(GoogleDriveService drive, DriveIoExecutor executor,
+                             FileServiceProperties props, MeterRegistry registry) {
+        this.drive = drive;
+        this.executor = executor;
+        this.concurrency = Math.max(1, props.getZipPrefetchConcurrency());
+        this.memoryPerEntry = props.getZipPrefetchMemoryPerEntry().toBytes();
+        this.buildTimer = Timer.builder("files.zip.build").description("Tiempo total de construcción del ZIP")
+                .publishPercentileHistogram().register(registry);
+        this.firstByteTimer = Timer.builder("files.zip.ttfb").description("Tiempo hasta el primer byte del ZIP")
+                .publishPercentileHistogram().register(registry);
+    }
+
+    /** Contenido ya descargado de una entrada: en memoria o volcado a disco */
+    private record Prefetched(byte[] bytes, Path spill) {
+        void writeTo(OutputStream out) throws IOException {
+            if (bytes != null) {
+                out.write(bytes);
+            } else {
+                Files.copy(spill, out);
+            }
+        }
+
+        void discard() {
+            if (spill != null) {
+                try {
+                    Files.deleteIfExists(spill);
+                } catch (IOException ignored) {
+                    // temporal huérfano: lo limpia el SO
+                }
+            }
+        }
+    }
+
+    /**
+     * Entradas del ZIP de un producto a partir de sus filas de {@code stored_files}, por nombre.
+     * El ZIP en streaming y el artefacto en disco salen de aquí, así una descarga devuelve el mismo
+     * archivo haya o no artefacto.
+     */
+    static List<DriveFile> entries(List<StoredFile> rows) {
+        return rows.stream()
+                .sorted(Comparator.comparing(StoredFile::getFilename))
+                .map(sf -> new DriveFile(sf.getDriveFileId(), sf.getFilename(), sf.getFileType(), sf.getSize()))
+                .toList();
+    }
+
+    public void write(List<DriveFile> files, OutputStream os) throws IOException {
+        long start = System.nanoTime();
+        AtomicBoolean aborted = new AtomicBoolean();
+        Deque<Future<Prefetched>> window = new ArrayDeque<>(concurrency);
+        Iterator<DriveFile> pending = files.iterator();
+        boolean firstByte = true;
+        boolean ok = false;
+
+        try {
+            while (window.size() < concurrency && pending.hasNext()) {
+                window.add(prefetch(pending.next(), aborted));
+            }
+
+            ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(os));
+            for (DriveFile f : files) {
+                Prefetched content = await(window.poll());
+                // Hueco libre en la ventana: se pide la siguiente antes de escribir esta
+                if (pending.hasNext()) {
+                    window.add(prefetch(pending.next(), aborted));
+                }
+                try {
+                    zos.putNextEntry(new ZipEntry(f.getName()));
+                    if (firstByte) {
+                        firstByteTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        firstByte = false;
+                    }
+                    content.writeTo(zos);
+                    zos.closeEntry();
+                } finally {
+                    content.discard();
+                }
+            }
+            zos.finish();
+            zos.flush();
+            ok = true;
+        } finally {
+            if (!ok) {
+                // Cliente desconectado o fallo de Drive: se cancelan las descargas pendientes
+                aborted.set(true);
+                for (Future<Prefetched> f : window) {
+                    if (!f.cancel(true) && f.isDone()) {
+                        try {
+                            Prefetched p = f.get();
+                            if (p != null) p.discard();
+                        } catch (Exception ignored) {
+                            // ya falló o se canceló: no hay nada que limpiar
+                        }
+                    }
+                }
+            }
+            buildTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Future<Prefetched> prefetch(DriveFile f, AtomicBoolean aborted) {
+        return executor.submit(() -> {
+            Prefetched p = download(f);
+            if (aborted.get()) {
+                p.discard();
+                return null;
+            }
+            return p;
+        });
+    }
+
+    private Prefetched download(DriveFile f) throws IOException {
+        try (InputStream in = drive.downloadFile(f.getId())) {
+            if (f.getSize() != null && f.getSize() <= memoryPerEntry) {
+                return new Prefetched(in.readAllBytes(), null);
+            }
+            Path spill = Files.createTempFile("zip-prefetch-", ".part");
+            try {
+                Files.copy(in, spill, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.deleteIfExists(spill);
+                throw e;
+            }
+            return new Prefetched(null, spill);
+        }
+    }
+
+    private static Prefetched await(Future<Prefetched> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido esperando una entrada del ZIP");
+        } catch (CancellationException e) {
+            throw new IOException("Descarga de entrada cancelada", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            throw new IOException("Error descargando entrada del ZIP: " + cause.getMessage(), cause);
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.Repository.UploadSessionRepository;
+import com.aec.FileSrv.config.DriveProperties;
+import com.aec.FileSrv.config.FileServiceProperties;
+import com.aec.FileSrv.drive.DriveGovernor;
+import com.aec.FileSrv.drive.DriveMetrics;
+import com.aec.FileSrv.drive.DriveMetrics.Kind;
+import com.aec.FileSrv.model.UploadSession;
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.EmptyContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.util.ExponentialBackOff;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.File;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Subidas por chunks con el protocolo reanudable de Drive
+ * (https://developers.google.com/drive/api/guides/manage-uploads#resumable).
+ *
+ * Se habla el protocolo directamente sobre el {@code HttpRequestFactory} del cliente Drive
+ * (misma autenticación y misma URL base) en lugar de {@code MediaHttpUploader}, porque éste
+ * no permite retomar una URI de sesión existente tras un reinicio.
+ */
+@Service
+public class ResumableUploadService {
+
+    /** Drive exige chunks múltiplos de 256 KiB (salvo el último) */
+    private static final int CHUNK_GRANULARITY = 256 * 1024;
+    private static final int STATUS_RESUME_INCOMPLETE = 308;
+
+    /** Estado de la sesión: bytes confirmados por Drive o, si terminó, el ID del archivo */
+    private record Progress(long offset, String fileId) { }
+
+    private final Drive drive;
+    private final DriveProperties props;
+    private final UploadSessionRepository sessions;
+    private final DriveMetrics metrics;
+    private final DriveGovernor governor;
+    /** Instancia que tiene las copias locales; sólo ella puede retomar sus sesiones */
+    private final String owner;
+    private final Logger log = LoggerFactory.getLogger(ResumableUploadService.class);
+
+    public ResumableUploadService(Drive drive, DriveProperties props, UploadSessionRepository sessions,
+                                  DriveMetrics metrics, DriveGovernor governor, FileServiceProperties serviceProps) {
+        this.drive = drive;
+        this.props = props;
+        this.sessions = sessions;
+        this.metrics = metrics;
+        this.governor = governor;
+        this.owner = serviceProps.getInstanceId();
+    }
+
+    public boolean shouldUseResumable(long size) {
+        return size >= props.getResumableThreshold().toBytes();
+    }
+
+    /**
+     * Copia el multipart a disco, persiste la sesión y sube por chunks.
+     * Si {@code existingFileId} no es null se reemplaza el contenido de ese archivo.
+     */
+    public String upload(MultipartFile multipart, String folderId, String existingFileId,
+                         String filename, String mime,
+                         Long productId, Long orderId, String uploader) throws IOException {
+        Path dir = Path.of(props.getUploadSessionDir()).toAbsolutePath();
+        Files.createDirectories(dir);
+        Path spool = dir.resolve(UUID.randomUUID() + ".part");
+        UploadSession session;
+        try {
+            multipart.transferTo(spool);
+            Instant now = Instant.now();
+            session = sessions.save(UploadSession.builder()
+                    .owner(owner)
+                    .spoolPath(spool.toString())
+                    .folderId(folderId)
+                    .existingFileId(existingFileId)
+                    .filename(filename)
+                    .mimeType(mime)
+                    .totalBytes(Files.size(spool))
+                    .bytesUploaded(0L)
+                    .status(UploadSession.Status.UPLOADING)
+                    .productId(productId)
+                    .orderId(orderId)
+                    .uploader(uploader)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spool);
+            throw e;
+        }
+        return resume(session);
+    }
+
+    /**
+     * Sube un stream de longitud conocida sin copia local: cada chunk se acumula en un buffer
+     * (memoria acotada a un chunk) y se reintenta desde ahí. La sesión no se persiste porque,
+     * sin copia local, no se puede retomar tras un reinicio.
+     */
+    public String uploadStream(InputStream in, long totalBytes, String folderId, String existingFileId,
+                               String filename, String mime) throws IOException {
+        UploadSession session = UploadSession.builder()
+                .folderId(folderId)
+                .existingFileId(existingFileId)
+                .filename(filename)
+                .mimeType(mime)
+                .totalBytes(totalBytes)
+                .bytesUploaded(0L)
+                .status(UploadSession.Status.UPLOADING)
+                .build();
+        session.setSessionUri(initiate(session));
+
+        int chunkSize = chunkSize();
+        byte[] buffer = new byte[(int) Math.min(chunkSize, Math.max(totalBytes, 1))];
+        long offset = 0;
+        while (true) {
+            int len = in.readNBytes(buffer, 0, (int) Math.min(buffer.length, totalBytes - offset));
+            if (len == 0) {
+                throw new IOException("Drive no cerró la sesión tras recibir " + totalBytes + " bytes");
+            }
+            if (offset + len < totalBytes && len < buffer.length) {
+                throw new EOFException("El cuerpo terminó en " + (offset + len) + " de " + totalBytes + " bytes");
+            }
+            int sent = 0;
+            do {
+                Progress p = sendChunkWithRetry(session, buffer, sent, offset + sent, len - sent);
+                if (p.fileId() != null) {
+                    log.info("Drive resumable (stream) OK -> id={}, name={}, bytes={}", p.fileId(), filename, totalBytes);
+                    return p.fileId();
+                }
+                // Drive puede confirmar sólo parte del chunk: se reenvía el resto desde el buffer.
+                // Si dice tener menos que el inicio del chunk, esos bytes ya no están en memoria.
+                if (p.offset() < offset || p.offset() > offset + len) {
+                    throw new IOException("Drive confirmó " + p.offset() + " bytes fuera del chunk "
+                            + offset + "-" + (offset + len - 1) + "; no se puede continuar sin copia local");
+                }
+                sent = (int) (p.offset() - offset);
+            } while (sent < len);
+            offset += len;
+        }
+    }
+
+    /**
+     * Sesiones de esta instancia que quedaron a medias (p. ej. por un reinicio). Las de otras
+     * réplicas no se tocan aquí: pueden estar subiendo ahora mismo y la copia local está en su disco.
+     */
+    public List<UploadSession> pendingSessions() {
+        return sessions.findByOwnerAndStatus(owner, UploadSession.Status.UPLOADING);
+    }
+
+    /**
+     * Sesiones de otras instancias que llevan más de {@code upload-session-lease} sin avanzar:
+     * su dueño ya no existe (p. ej. un pod reemplazado con otro hostname). Pasan a esta instancia
+     * para que {@link #resume} las termine o, si la copia local no está en este disco, las marque FAILED.
+     */
+    public List<UploadSession> takeOverExpiredSessions() {
+        Instant expired = Instant.now().minus(props.getUploadSessionLease());
+        List<UploadSession> taken = new ArrayList<>();
+        for (UploadSession stale : sessions.findByStatusAndOwnerNotAndUpdatedAtBefore(
+                UploadSession.Status.UPLOADING, owner, expired)) {
+            if (sessions.takeOver(stale.getId(), stale.getOwner(), owner, expired, Instant.now()) == 0) {
+                continue; // otra instancia se adelantó o la sesión volvió a avanzar
+            }
+            sessions.findById(stale.getId()).ifPresent(session -> {
+                log.info("Sesión reanudable {} tomada de la instancia caducada {}", session.getId(), stale.getOwner());
+                taken.add(session);
+            });
+        }
+        return taken;
+    }
+
+    /**
+     * Continúa la sesión desde el último byte confirmado por Drive y devuelve el ID del archivo.
+     * Un fallo definitivo marca la sesión FAILED y borra la copia local; una interrupción
+     * (apagado) la deja UPLOADING para retomarla al arrancar.
+     */
+    public String resume(UploadSession session) throws IOException {
+        Path spool = Path.of(session.getSpoolPath());
+        if (!Files.exists(spool)) {
+            session.setStatus(UploadSession.Status.FAILED);
+            touch(session);
+            throw new IOException("No existe la copia local de la subida " + session.getId());
+        }
+        String fileId;
+        try {
+            fileId = transfer(session, spool);
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            fail(session, spool, e);
+            throw e;
+        }
+
+        sessions.delete(session);
+        Files.deleteIfExists(spool);
+        log.info("Drive resumable OK -> id={}, name={}, bytes={}", fileId, session.getFilename(), session.getTotalBytes());
+        return fileId;
+    }
+
+    /** Sube desde el último byte confirmado hasta que Drive devuelve el ID del archivo */
+
+    private String transfer(UploadSession session, Path spool) throws IOException {
+        Progress progress = session.getSessionUri() == null ? start(session) : currentProgress(session);
+        int chunkSize = chunkSize();
+        long total = session.getTotalBytes();
+        byte[] buffer = new byte[(int) Math.min(chunkSize, Math.max(total, 1))];
+
+        try (FileChannel channel = FileChannel.open(spool, StandardOpenOption.READ)) {
+            while (progress.fileId() == null) {
+                long offset = progress.offset();
+                int len = (int) Math.min(chunkSize, total - offset);
+                if (len <= 0) {
+                    throw new IOException("Drive no cerró la sesión tras recibir " + total + " bytes");
+                }
+                readFully(channel, buffer, offset, len);
+                progress = sendChunkWithRetry(session, buffer, 0, offset, len);
+                session.setBytesUploaded(progress.fileId() != null ? total : progress.offset());
+                touch(session);
+                log.debug("Subida reanudable {}: {}/{} bytes", session.getId(), session.getBytesUploaded(), total);
+            }
+        }
+        return progress.fileId();
+    }
+
+    // ─── protocolo ────────────────────────────────────────────────────────────
+
+    private Progress start(UploadSession session) throws IOException {
+        session.setSessionUri(initiate(session));
+        session.setBytesUploaded(0L);
+        touch(session);
+        return new Progress(0, null);
+    }
+
+    /** Pregunta a Drive cuántos bytes tiene; si la sesión caducó se abre una nueva. */
+    private Progress currentProgress(UploadSession session) throws IOException {
+        try {
+            return withRetry("files.upload.status", () -> queryStatus(session));
+        } catch (HttpResponseException e) {
+            if (e.getStatusCode() == 404 || e.getStatusCode() == 410) {
+                log.warn("Sesión reanudable {} caducada en Drive, se reinicia desde 0", session.getId());
+                return start(session);
+            }
+            throw e;
+        }
+    }
+
+    private String initiate(UploadSession session) throws IOException {
+        boolean replace = session.getExistingFileId() != null;
+        GenericUrl url = new GenericUrl(drive.getRootUrl() + "upload/" + drive.getServicePath() + "files"
+                + (replace ? "/" + session.getExistingFileId() : ""));
+        url.set("uploadType", "resumable");
+        url.set("fields", "id");
+
+        File metadata = new File().setName(session.getFilename());
+        if (!replace) {
+            metadata.setParents(List.of(session.getFolderId()));
+        }
+
+        HttpRequest request = drive.getRequestFactory()
+                .buildPostRequest(url, new JsonHttpContent(drive.getJsonFactory(), metadata));
+        if (replace) {
+            request.getHeaders().set("X-HTTP-Method-Override", "PATCH");
+        }
+        request.getHeaders().set("X-Upload-Content-Type", session.getMimeType());
+        request.getHeaders().set("X-Upload-Content-Length", String.valueOf(session.getTotalBytes()));
+        prepare(request);
+
+        return governor.call("files.upload.initiate", Kind.METADATA, () -> {
+            HttpResponse response = request.execute();
+            try {
+                if (!response.isSuccessStatusCode() || response.getHeaders().getLocation() == null) {
+                    throw new HttpResponseException(response);
+                }
+                return response.getHeaders().getLocation();
+            } finally {
+                response.disconnect();
+            }
+        });
+    }
+
+    /** Envía buffer[bufOffset, bufOffset+len) como los bytes [offset, offset+len) del archivo */
+    private Progress sendChunkWithRetry(UploadSession session, byte[] buffer, int bufOffset,
+                                        long offset, int len) throws IOException {
+        ExponentialBackOff backOff = backOff();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                if (attempt > 0) {
+                    // Drive pudo haber recibido parte del chunk fallido: retomamos desde su offset real
+                    Progress p = queryStatus(session);
+                    if (p.fileId() != null || p.offset() != offset) {
+                        return p;
+                    }
+                }
+                HttpRequest request = drive.getRequestFactory().buildPutRequest(
+                        new GenericUrl(session.getSessionUri()),
+                        new ByteArrayContent(session.getMimeType(), buffer, bufOffset, len));
+                request.getHeaders().setContentRange(
+                        "bytes " + offset + "-" + (offset + len - 1) + "/" + session.getTotalBytes());
+                Progress p = execute("files.upload.chunk", Kind.TRANSFER, request, session.getTotalBytes());
+                metrics.recordUploaded(len);
+                return p;
+            } catch (IOException e) {
+                if (!isRetryable(e) || attempt >= props.getResumableMaxRetries()) {
+                    throw e;
+                }
+                metrics.recordRetry("files.upload.chunk", e);
+                long waitMs = Math.max(backOff.nextBackOffMillis(), DriveGovernor.retryAfterMillis(e));
+                log.warn("Chunk {}-{} de la sesión {} falló ({}), reintento {} en {} ms",
+                        offset, offset + len - 1, session.getId(), e.getMessage(), attempt + 1, waitMs);
+                sleep(waitMs);
+            }
+        }
+    }
+
+    private Progress queryStatus(UploadSession session) throws IOException {
+        HttpRequest request = drive.getRequestFactory()
+                .buildPutRequest(new GenericUrl(session.getSessionUri()), new EmptyContent());
+        request.getHeaders().setContentRange("bytes */" + session.getTotalBytes());
+        return execute("files.upload.status", Kind.METADATA, request, session.getTotalBytes());
+    }
+
+    private Progress execute(String operation, Kind kind, HttpRequest request, long total) throws IOException {
+        prepare(request);
+        // Los chunks y las consultas de estado ya tienen aquí su propio bucle de reintentos
+        return governor.callOnce(operation, kind, () -> {
+            HttpResponse response = request.execute();
+            try {
+                int code = response.getStatusCode();
+                if (code == 200 || code == 201) {
+                    return new Progress(total, response.parseAs(File.class).getId());
+                }
+                if (code == STATUS_RESUME_INCOMPLETE) {
+                    // Range: bytes=0-N  (ausente si Drive aún no tiene ningún byte)
+                    String range = response.getHeaders().getRange();
+                    long next = range == null ? 0 : Long.parseLong(range.substring(range.lastIndexOf('-') + 1)) + 1;
+                    return new Progress(next, null);
+                }
+                throw new HttpResponseException(response);
+            } finally {
+                response.disconnect();
+            }
+        });
+    }
+
+    private void prepare(HttpRequest request) {
+        request.setParser(drive.getObjectParser());
+        request.setThrowExceptionOnExecuteError(false);
+        // 308 no es una redirección en este protocolo, y los reintentos los gestiona este servicio
+        request.setFollowRedirects(false);
+        request.setNumberOfRetries(0);
+    }
+
+    // ─── utilidades ───────────────────────────────────────────────────────────
+
+    @FunctionalInterface
+    private interface IoCall<T> {
+        T call() throws IOException;
+    }
+
+    private <T> T withRetry(String operation, IoCall<T> call) throws IOException {
+        ExponentialBackOff backOff = backOff();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return call.call();
+            } catch (IOException e) {
+                if (!isRetryable(e) || attempt >= props.getResumableMaxRetries()) {
+                    throw e;
+                }
+                metrics.recordRetry(operation, e);
+                sleep(Math.max(backOff.nextBackOffMillis(), DriveGovernor.retryAfterMillis(e)));
+            }
+        }
+    }
+
+    private static boolean isRetryable(IOException e) {
+        if (e instanceof HttpResponseException hre) {
+            return hre.getStatusCode() >= 500 || DriveGovernor.isThrottled(e);
+        }
+        return !(e instanceof InterruptedIOException);
+    }
+
+    private ExponentialBackOff backOff() {
+        return new ExponentialBackOff.Builder()
+                .setInitialIntervalMillis((int) props.getResumableInitialBackoff().toMillis())
+                .setMaxIntervalMillis(30_000)
+                .setMaxElapsedTimeMillis(Integer.MAX_VALUE)
+                .build();
+    }
+
+    private int chunkSize() {
+        long configured = props.getResumableChunkSize().toBytes();
+        long rounded = Math.max(1, configured / CHUNK_GRANULARITY) * CHUNK_GRANULARITY;
+        return (int) Math.min(rounded, Integer.MAX_VALUE - CHUNK_GRANULARITY);
+    }
+
+    private void fail(UploadSession session, Path spool, Exception cause) {
+        log.warn("Subida reanudable {} ({}) fallida en {}/{} bytes: {}", session.getId(), session.getFilename(),
+                session.getBytesUploaded(), session.getTotalBytes(), cause.getMessage());
+        try {
+            session.setStatus(UploadSession.Status.FAILED);
+            touch(session);
+        } catch (RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+        try {
+            Files.deleteIfExists(spool);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private void touch(UploadSession session) {
+        session.setUpdatedAt(Instant.now());
+        sessions.save(session);
+    }
+
+    private static void readFully(FileChannel channel, byte[] buffer, long position, int len) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(buffer, 0, len);
+        while (bb.hasRemaining()) {
+            if (channel.read(bb, position + bb.position()) < 0) {
+                throw new EOFException("Fin inesperado de la copia local en " + (position + bb.position()));
+            }
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(Math.max(0, millis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido durante el backoff de la subida");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.aec.FileSrv.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/** Archivo ya volcado a disco presentado como {@link MultipartFile}, para reutilizar el flujo de subida normal. */
+class SpooledMultipartFile implements MultipartFile {
+
+    private final Path path;
+    private final String filename;
+    private final String contentType;
+
+    SpooledMultipartFile(Path path, String filename, String contentType) {
+        this.path = path;
+        this.filename = filename;
+        this.contentType = contentType;
+    }
+
+    @Override public String getName() { return "file"; }
+    @Override public String getOriginalFilename() { return filename; }
+    @Override public String getContentType() { return contentType; }
+
+    @Override
+    public boolean isEmpty() {
+        return getSize() == 0;
+    }
+
+    @Override
+    public long getSize() {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        transferTo(dest.toPath());
+    }
+
+    @Override
+    public void transferTo(Path dest) throws IOException {
+        // Se copia (no se mueve): la copia del trabajo sólo se borra cuando éste termina
+        Files.copy(path, dest, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
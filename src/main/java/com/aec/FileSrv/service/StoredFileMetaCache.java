@@ -0,0 +1,141 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.Repository.StoredFileRepository;
+import com.aec.FileSrv.config.FileServiceProperties;
+import com.aec.FileSrv.model.StoredFile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caché acotada (LRU + TTL) de filas de {@code stored_files} por driveFileId, para que una descarga
+ * no consulte Postgres en cada petición. Los IDs desconocidos también se cachean (con un TTL más
+ * corto) para que un cliente que insiste con un enlace roto no llegue siempre a la BD.
+ *
+ * Las escrituras de esta réplica la invalidan; los cambios hechos por otra réplica se ven, como
+ * mucho, cuando vence el TTL. Por eso el TTL es de segundos: el ETag y la {@code contentVersion} de
+ * la caché de disco salen de esta fila, y una fila vieja serviría (o validaría con 304) el contenido
+ * anterior a una re-subida hecha en otra réplica. Aun así absorbe las ráfagas de peticiones al mismo
+ * archivo (rangos de un vídeo, miniaturas de un catálogo), que es donde está el ahorro.
+ *
+ * Una lectura de BD que empezó antes de un {@link #invalidate} no puede dejar su resultado en la
+ * caché: cada grupo de claves lleva una generación que {@code invalidate} incrementa, y
+ * {@code put} descarta la fila si la generación cambió mientras se consultaba la BD.
+ * Las filas devueltas se comparten entre hilos y no deben modificarse.
+ */
+@Component
+public class StoredFileMetaCache {
+
+    /** {@code row == null} es una entrada negativa (el ID no existe en BD) */
+    private record Entry(StoredFile row, long expiresAtNanos) { }
+
+    /** Grupos de generación: suficientes para que una invalidación rara vez afecte a otra clave */
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final StoredFileRepository repo;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    /** Protegido por {@code lock}, como {@code entries} */
+    private final long[] generations = new long[GENERATION_STRIPES];
+
+    private final Counter hits;
+    private final Counter negativeHits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public StoredFileMetaCache(StoredFileRepository repo, FileServiceProperties props, MeterRegistry registry) {
+        this.repo = repo;
+        this.maxEntries = Math.max(1, props.getMetaCacheMaxEntries());
+        this.ttlNanos = props.getMetaCacheTtl().toNanos();
+        this.negativeTtlNanos = props.getMetaCacheNegativeTtl().toNanos();
+        this.hits = Counter.builder("files.meta.cache.requests").tag("result", "hit").register(registry);
+        this.negativeHits = Counter.builder("files.meta.cache.requests").tag("result", "negative").register(registry);
+        this.misses = Counter.builder("files.meta.cache.requests").tag("result", "miss").register(registry);
+        this.evictions = Counter.builder("files.meta.cache.evictions").register(registry);
+        Gauge.builder("files.meta.cache.size", this, StoredFileMetaCache::size).register(registry);
+    }
+
+    public Optional<StoredFile> find(String driveFileId) {
+        if (driveFileId == null) {
+            return Optional.empty();
+        }
+        long generation;
+        lock.lock();
+        try {
+            generation = generations[stripe(driveFileId)];
+            Entry e = entries.get(driveFileId);
+            if (e != null) {
+                if (System.nanoTime() - e.expiresAtNanos() < 0) {
+                    (e.row() != null ? hits : negativeHits).increment();
+                    return Optional.ofNullable(e.row());
+                }
+                entries.remove(driveFileId);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        misses.increment();
+        Optional<StoredFile> row = repo.findByDriveFileId(driveFileId);
+        put(driveFileId, row.orElse(null), generation);
+        return row;
+    }
+
+    /** Se llama al crear, reemplazar o borrar la fila de {@code driveFileId}. */
+    public void invalidate(String driveFileId) {
+        if (driveFileId == null) return;
+        lock.lock();
+        try {
+            entries.remove(driveFileId);
+            generations[stripe(driveFileId)]++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Guarda la fila leída con la generación {@code readGeneration}, salvo que se haya invalidado desde entonces */
+    private void put(String driveFileId, StoredFile row, long readGeneration) {
+        long ttl = row != null ? ttlNanos : negativeTtlNanos;
+        if (ttl <= 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (generations[stripe(driveFileId)] != readGeneration) {
+                return;
+            }
+            entries.put(driveFileId, new Entry(row, System.nanoTime() + ttl));
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int stripe(String driveFileId) {
+        return Math.floorMod(driveFileId.hashCode(), GENERATION_STRIPES);
+    }
+}
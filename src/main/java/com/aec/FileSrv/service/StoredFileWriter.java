@@ -0,0 +1,124 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.config.ServerTiming;
+import com.aec.FileSrv.model.StoredFile;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Escritura de {@code stored_files} con un único {@code INSERT ... ON CONFLICT DO UPDATE}:
+ * la fila del mismo dueño y nombre se actualiza en la misma sentencia, sin leerla antes, y los
+ * índices únicos parciales (V2) hacen imposibles los duplicados aunque haya subidas simultáneas.
+ * {@code original_name} se conserva si la fila ya existía.
+ *
+ * Se usa {@link JdbcTemplate} porque JPA no expresa ON CONFLICT y, con IDENTITY, Hibernate
+ * tampoco agrupa los INSERT de un lote.
+ * Cada escritura invalida la entrada de {@link StoredFileMetaCache} del driveFileId escrito.
+ */
+@Component
+@RequiredArgsConstructor
+public class StoredFileWriter {
+
+    private static final String COLUMNS = "INSERT INTO stored_files "
+            + "(drive_file_id, filename, original_name, file_type, size, uploaded_at, uploader, product_id, order_id, sha256, md5) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ";
+    private static final String ON_CONFLICT_UPDATE = " DO UPDATE SET "
+            + "drive_file_id = EXCLUDED.drive_file_id, file_type = EXCLUDED.file_type, size = EXCLUDED.size, "
+            + "uploaded_at = EXCLUDED.uploaded_at, uploader = EXCLUDED.uploader, "
+            + "sha256 = EXCLUDED.sha256, md5 = EXCLUDED.md5";
+    // El predicado del índice parcial debe repetirse para que Postgres lo use como árbitro
+    private static final String UPSERT_PRODUCT = COLUMNS
+            + "ON CONFLICT (product_id, filename) WHERE product_id IS NOT NULL" + ON_CONFLICT_UPDATE;
+    private static final String UPSERT_ORDER = COLUMNS
+            + "ON CONFLICT (order_id, filename) WHERE order_id IS NOT NULL" + ON_CONFLICT_UPDATE;
+    private static final String RETURNING = " RETURNING id, original_name";
+    private static final String DELETE_BY_DRIVE_IDS = "DELETE FROM stored_files WHERE drive_file_id = ANY(?)";
+
+    private final JdbcTemplate jdbc;
+    private final StoredFileMetaCache metaCache;
+
+    /** Inserta o actualiza la fila y devuelve {@code sf} con el id y el original_name definitivos. */
+    public StoredFile upsert(StoredFile sf) {
+        long start = System.nanoTime();
+        jdbc.query(sqlFor(sf) + RETURNING, ps -> bind(ps, sf), rs -> {
+            sf.setId(rs.getLong("id"));
+            sf.setOriginalName(rs.getString("original_name"));
+        });
+        ServerTiming.add(ServerTiming.Phase.DB, System.nanoTime() - start);
+        metaCache.invalidate(sf.getDriveFileId());
+        return sf;
+    }
+
+    /** Upsert de un lote en una transacción, con sentencias JDBC por lotes (sin RETURNING). */
+    @Transactional
+    public void upsertAll(List<StoredFile> rows) {
+        long start = System.nanoTime();
+        List<StoredFile> products = rows.stream().filter(sf -> sf.getProductId() != null).toList();
+        List<StoredFile> orders = rows.stream().filter(sf -> sf.getProductId() == null).toList();
+        if (!products.isEmpty()) {
+            jdbc.batchUpdate(UPSERT_PRODUCT, products, products.size(), StoredFileWriter::bind);
+        }
+        if (!orders.isEmpty()) {
+            jdbc.batchUpdate(UPSERT_ORDER, orders, orders.size(), StoredFileWriter::bind);
+        }
+        ServerTiming.add(ServerTiming.Phase.DB, System.nanoTime() - start);
+        rows.forEach(sf -> metaCache.invalidate(sf.getDriveFileId()));
+    }
+
+    /** Borra las filas de {@code driveFileIds} con una sola sentencia; devuelve cuántas borró. */
+    public int deleteAll(Collection<String> driveFileIds) {
+        if (driveFileIds.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        int deleted = jdbc.update(con -> {
+            PreparedStatement ps = con.prepareStatement(DELETE_BY_DRIVE_IDS);
+            ps.setArray(1, con.createArrayOf("varchar", driveFileIds.toArray()));
+            return ps;
+        });
+        ServerTiming.add(ServerTiming.Phase.DB, System.nanoTime() - start);
+        driveFileIds.forEach(metaCache::invalidate);
+        return deleted;
+    }
+
+    private static String sqlFor(StoredFile sf) {
+        if (sf.getProductId() != null) {
+            return UPSERT_PRODUCT;
+        }
+        if (sf.getOrderId() != null) {
+            return UPSERT_ORDER;
+        }
+        throw new IllegalArgumentException("El archivo debe pertenecer a un producto o a una orden");
+    }
+
+    private static void bind(PreparedStatement ps, StoredFile sf) throws SQLException {
+        ps.setString(1, sf.getDriveFileId());
+        ps.setString(2, sf.getFilename());
+        ps.setString(3, sf.getOriginalName());
+        ps.setString(4, sf.getFileType());
+        ps.setLong(5, sf.getSize());
+        ps.setTimestamp(6, Timestamp.from(sf.getUploadedAt()));
+        ps.setString(7, sf.getUploader());
+        setLong(ps, 8, sf.getProductId());
+        setLong(ps, 9, sf.getOrderId());
+        ps.setString(10, sf.getSha256());
+        ps.setString(11, sf.getMd5());
+    }
+
+    private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, value);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.dto.UploadJobDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Avisa por WebSocket de los cambios de estado de un trabajo de subida, como alternativa a sondear
+ * {@code GET /api/files/jobs/{id}}. El cliente se conecta a {@code /api/files/jobs/ws?jobId=...}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UploadJobNotifier extends TextWebSocketHandler {
+
+    private static final String JOB_ID_ATTR = "jobId";
+    private static final String SEND_LOCK_ATTR = "sendLock";
+
+    private final ObjectMapper mapper;
+    private final Map<String, Set<WebSocketSession>> subscribers = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        String jobId = session.getUri() == null ? null
+                : UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams().getFirst(JOB_ID_ATTR);
+        if (jobId == null || jobId.isBlank()) {
+            session.close(CloseStatus.BAD_DATA.withReason("Falta jobId"));
+            return;
+        }
+        session.getAttributes().put(JOB_ID_ATTR, jobId);
+        session.getAttributes().put(SEND_LOCK_ATTR, new ReentrantLock());
+        subscribers.computeIfAbsent(jobId, k -> ConcurrentHashMap.newKeySet()).add(session);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Object jobId = session.getAttributes().get(JOB_ID_ATTR);
+        if (jobId != null) {
+            subscribers.computeIfPresent((String) jobId, (k, set) -> {
+                set.remove(session);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    /** Envía el estado a quien siga ese trabajo; en un estado final cierra las conexiones. */
+    public void publish(UploadJobDto job, boolean finished) {
+        Set<WebSocketSession> sessions = finished ? subscribers.remove(job.getJobId()) : subscribers.get(job.getJobId());
+        if (sessions == null || sessions.isEmpty()) {
+            return;
+        }
+        TextMessage message;
+        try {
+            message = new TextMessage(mapper.writeValueAsString(job));
+        } catch (IOException e) {
+            log.warn("No se pudo serializar el trabajo {}: {}", job.getJobId(), e.getMessage());
+            return;
+        }
+        for (WebSocketSession session : sessions) {
+            // sendMessage no admite envíos concurrentes sobre la misma sesión. ReentrantLock y no
+            // synchronized: bloquear en E/S dentro de synchronized fija el hilo virtual a su portador
+            ReentrantLock lock = (ReentrantLock) session.getAttributes().get(SEND_LOCK_ATTR);
+            lock.lock();
+            try {
+                if (session.isOpen()) {
+                    session.sendMessage(message);
+                    if (finished) {
+                        session.close(CloseStatus.NORMAL);
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("No se pudo notificar el trabajo {}: {}", job.getJobId(), e.getMessage());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.Repository.StoredFileRepository;
+import com.aec.FileSrv.Repository.UploadJobRepository;
+import com.aec.FileSrv.config.FileServiceProperties;
+import com.aec.FileSrv.config.IoThreads;
+import com.aec.FileSrv.dto.FileInfoDto;
+import com.aec.FileSrv.dto.UploadJobDto;
+import com.aec.FileSrv.model.UploadJob;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Subidas asíncronas: la petición sólo copia el archivo a disco y registra el trabajo
+ * (202 + id); un pool acotado de workers lo sube a Drive con el flujo normal de
+ * {@link FileStorageService}. La cola vive en {@code upload_jobs}: tras un reinicio
+ * se retoman los trabajos pendientes de esta instancia, y los de instancias que dejaron
+ * de renovar su arriendo (p. ej. un pod reemplazado con otro hostname) pasan a esta.
+ */
+@Service
+@Slf4j
+public class UploadJobService {
+
+    private final UploadJobRepository jobs;
+    private final StoredFileRepository files;
+    private final FileStorageService storage;
+    private final UploadJobNotifier notifier;
+    private final Path dir;
+    private final String owner;
+    private final int maxAttempts;
+    private final FileServiceProperties props;
+
+    private static final Set<UploadJob.Status> PENDING = EnumSet.of(UploadJob.Status.QUEUED, UploadJob.Status.RUNNING);
+
+    /** Trabajos ya entregados al pool en esta instancia, para no encolarlos dos veces */
+    private final Set<String> dispatched = ConcurrentHashMap.newKeySet();
+    private final ExecutorService workers;
+
+    public UploadJobService(UploadJobRepository jobs, StoredFileRepository files, FileStorageService storage,
+                            UploadJobNotifier notifier, FileServiceProperties props,
+                            Environment env) throws IOException {
+        this.jobs = jobs;
+        this.files = files;
+        this.storage = storage;
+        this.notifier = notifier;
+        this.props = props;
+        this.dir = Path.of(props.getUploadJobDir()).toAbsolutePath();
+        this.owner = props.getInstanceId();
+        this.maxAttempts = Math.max(1, props.getUploadJobMaxAttempts());
+        Files.createDirectories(dir);
+
+        // El número de workers acota las subidas simultáneas aunque los hilos sean virtuales
+        this.workers = Executors.newFixedThreadPool(Math.max(1, props.getUploadJobWorkers()),
+                IoThreads.factory("upload-job", IoThreads.virtual(env)));
+    }
+
+    public UploadJob submit(MultipartFile file, String uploader, Long entityId, boolean isProduct) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("El archivo no puede estar vacío");
+        }
+        if (entityId == null) {
+            throw new IllegalArgumentException("El entityId no puede ser null");
+        }
+        String id = UUID.randomUUID().toString();
+        Path spool = dir.resolve(id + ".part");
+        file.transferTo(spool);
+
+        Instant now = Instant.now();
+        UploadJob job = jobs.save(UploadJob.builder()
+                .id(id)
+                .status(UploadJob.Status.QUEUED)
+                .owner(owner)
+                .spoolPath(spool.toString())
+                .filename(file.getOriginalFilename())
+                .mimeType(file.getContentType() != null ? file.getContentType() : "application/octet-stream")
+                .size(file.getSize())
+                .productId(isProduct ? entityId : null)
+                .orderId(isProduct ? null : entityId)
+                .uploader(uploader)
+                .attempts(0)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        dispatch(id);
+        return job;
+    }
+
+    public Optional<UploadJob> find(String jobId) {
+        return jobs.findById(jobId);
+    }
+
+    public UploadJobDto toDto(UploadJob job) {
+        FileInfoDto file = job.getStatus() == UploadJob.Status.COMPLETED && job.getStoredFileId() != null
+                ? files.findById(job.getStoredFileId()).map(storage::toDto).orElse(null)
+                : null;
+        return UploadJobDto.builder()
+                .jobId(job.getId())
+                .status(job.getStatus().name())
+                .filename(job.getFilename())
+                .size(job.getSize())
+                .attempts(job.getAttempts())
+                .error(job.getError())
+                .createdAt(job.getCreatedAt())
+                .updatedAt(job.getUpdatedAt())
+                .file(file)
+                .build();
+    }
+
+    /** Un reinicio deja en RUNNING lo que estaba a medias: vuelve a la cola y se retoma. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        for (UploadJob job : jobs.findByOwnerAndStatusOrderByCreatedAtAsc(owner, UploadJob.Status.RUNNING)) {
+            job.setStatus(UploadJob.Status.QUEUED);
+            job.setUpdatedAt(Instant.now());
+            jobs.save(job);
+        }
+        sweep();
+    }
+
+    /**
+     * Renueva el arriendo de los trabajos propios, toma los de dueños caducados, recoge los
+     * trabajos en cola (nuevos reintentos o pendientes de un reinicio) y purga los antiguos.
+     */
+    @Scheduled(fixedDelayString = "${file-service.upload-job-sweep-ms:30000}")
+    public void sweep() {
+        jobs.renew(owner, PENDING, Instant.now());
+        takeOverExpired();
+        for (UploadJob job : jobs.findByOwnerAndStatusOrderByCreatedAtAsc(owner, UploadJob.Status.QUEUED)) {
+            dispatch(job.getId());
+        }
+        jobs.deleteByStatusInAndUpdatedAtBefore(EnumSet.of(UploadJob.Status.COMPLETED, UploadJob.Status.FAILED),
+                Instant.now().minus(props.getUploadJobRetention()));
+    }
+
+    /**
+     * Trabajos pendientes cuyo dueño no renueva el arriendo: pasan a esta instancia. Si la copia
+     * local no está (otro disco, o el directorio no sobrevivió al reemplazo del pod) no hay nada
+     * que subir y terminan en FAILED.
+     */
+    private void takeOverExpired() {
+        Instant expired = Instant.now().minus(props.getUploadJobLease());
+        for (UploadJob stale : jobs.findByStatusInAndOwnerNotAndUpdatedAtBefore(PENDING, owner, expired)) {
+            if (jobs.takeOver(stale.getId(), stale.getOwner(), owner, expired, Instant.now()) == 0) {
+                continue; // otra instancia se adelantó o el dueño volvió a renovar
+            }
+            UploadJob job = jobs.findById(stale.getId()).orElse(null);
+            if (job == null) {
+                continue;
+            }
+            if (Files.exists(Path.of(job.getSpoolPath()))) {
+                log.info("Trabajo de subida {} tomado de la instancia caducada {}", job.getId(), stale.getOwner());
+                continue; // queda en cola: lo recoge este mismo barrido
+            }
+            job.setStatus(UploadJob.Status.FAILED);
+            job.setError("La copia local " + job.getSpoolPath() + " no está disponible en esta instancia");
+            job.setUpdatedAt(Instant.now());
+            jobs.save(job);
+            notifier.publish(toDto(job), true);
+            log.warn("Trabajo de subida {} de la instancia caducada {} sin copia local; se marca FAILED",
+                    job.getId(), stale.getOwner());
+        }
+    }
+
+    private void dispatch(String jobId) {
+        if (!dispatched.add(jobId)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    run(jobId);
+                } finally {
+                    dispatched.remove(jobId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            dispatched.remove(jobId); // apagando: lo retoma el próximo arranque
+        }
+    }
+
+    private void run(String jobId) {
+        if (jobs.claim(jobId, Instant.now()) == 0) {
+            return; // ya no está en cola
+        }
+        UploadJob job = jobs.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+        notifier.publish(toDto(job), false);
+
+        Path spool = Path.of(job.getSpoolPath());
+        boolean finished;
+        try {
+            MultipartFile file = new SpooledMultipartFile(spool, job.getFilename(), job.getMimeType());
+            FileInfoDto saved = job.getProductId() != null
+                    ? storage.storeProductFile(file, job.getUploader(), job.getProductId())
+                    : storage.storeReceiptFile(file, job.getUploader(), job.getOrderId());
+            job.setStatus(UploadJob.Status.COMPLETED);
+            job.setStoredFileId(saved.getId());
+            job.setDriveFileId(saved.getDriveFileId());
+            job.setError(null);
+            finished = true;
+            log.info("Trabajo de subida {} completado: {} -> {}", jobId, job.getFilename(), saved.getDriveFileId());
+        } catch (Exception e) {
+            // Sin copia local no hay nada que reintentar
+            boolean retry = job.getAttempts() < maxAttempts && Files.exists(spool);
+            job.setStatus(retry ? UploadJob.Status.QUEUED : UploadJob.Status.FAILED);
+            job.setError(truncate(e.getMessage(), 2048));
+            finished = !retry;
+            log.warn("Trabajo de subida {} falló (intento {}/{}): {}", jobId, job.getAttempts(), maxAttempts, e.getMessage());
+        }
+        if (finished) {
+            try {
+                Files.deleteIfExists(spool);
+            } catch (IOException e) {
+                log.warn("No se pudo borrar la copia local {}: {}", spool, e.getMessage());
+            }
+        }
+        job.setUpdatedAt(Instant.now());
+        jobs.save(job);
+        notifier.publish(toDto(job), finished);
+    }
+
+    private static String truncate(String s, int max) {
+        return s == null || s.length() <= max ? s : s.substring(0, max);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
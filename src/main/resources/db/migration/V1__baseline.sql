@@ -0,0 +1,65 @@
+-- Esquema tal como lo dejaba ddl-auto: update. Idempotente: en una base ya creada por
+-- Hibernate sólo añade lo que falte.
+
+CREATE TABLE IF NOT EXISTS oauth_tokens (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    provider_key  VARCHAR(255) NOT NULL UNIQUE,
+    access_token  VARCHAR(4096),
+    refresh_token VARCHAR(4096),
+    expires_at    TIMESTAMP(6) WITH TIME ZONE
+);
+
+CREATE TABLE IF NOT EXISTS stored_files (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    drive_file_id VARCHAR(255) NOT NULL UNIQUE,
+    filename      VARCHAR(255) NOT NULL,
+    original_name VARCHAR(255) NOT NULL,
+    file_type     VARCHAR(255) NOT NULL,
+    size          BIGINT NOT NULL,
+    uploaded_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    uploader      VARCHAR(255) NOT NULL,
+    product_id    BIGINT,
+    order_id      BIGINT
+);
+ALTER TABLE stored_files ADD COLUMN IF NOT EXISTS sha256 VARCHAR(64);
+ALTER TABLE stored_files ADD COLUMN IF NOT EXISTS md5 VARCHAR(32);
+CREATE INDEX IF NOT EXISTS idx_stored_files_sha256_size ON stored_files (sha256, size);
+
+CREATE TABLE IF NOT EXISTS upload_sessions (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    session_uri    VARCHAR(4096),
+    spool_path     VARCHAR(1024) NOT NULL,
+    folder_id      VARCHAR(255) NOT NULL,
+    existing_file_id VARCHAR(255),
+    filename       VARCHAR(255) NOT NULL,
+    mime_type      VARCHAR(255) NOT NULL,
+    total_bytes    BIGINT NOT NULL,
+    bytes_uploaded BIGINT NOT NULL,
+    status         VARCHAR(255) NOT NULL,
+    drive_file_id  VARCHAR(255),
+    product_id     BIGINT,
+    order_id       BIGINT,
+    uploader       VARCHAR(255),
+    created_at     TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at     TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS upload_jobs (
+    id             VARCHAR(36) PRIMARY KEY,
+    status         VARCHAR(255) NOT NULL,
+    owner          VARCHAR(255) NOT NULL,
+    spool_path     VARCHAR(1024) NOT NULL,
+    filename       VARCHAR(255) NOT NULL,
+    mime_type      VARCHAR(255) NOT NULL,
+    size           BIGINT NOT NULL,
+    product_id     BIGINT,
+    order_id       BIGINT,
+    uploader       VARCHAR(255),
+    attempts       INTEGER NOT NULL,
+    drive_file_id  VARCHAR(255),
+    stored_file_id BIGINT,
+    error          VARCHAR(2048),
+    created_at     TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at     TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_upload_jobs_owner_status ON upload_jobs (owner, status);
@@ -0,0 +1,58 @@
+-- Un nombre por producto y por orden. Antes la unicidad dependía de find + save,
+-- y dos subidas simultáneas del mismo nombre podían crear filas duplicadas.
+
+-- Se conserva la fila más reciente de cada duplicado. Cada fila descartada apunta a otro archivo
+-- de Drive (drive_file_id es único: la subida perdedora creó el suyo), que se queda sin fila en
+-- stored_files: nada lo sirve ni lo borra. Sus IDs se guardan en orphaned_drive_files para
+-- revisarlos y borrarlos de Drive fuera de la migración (aquí no hay acceso a Drive).
+CREATE TABLE IF NOT EXISTS orphaned_drive_files (
+    drive_file_id VARCHAR(255) PRIMARY KEY,
+    stored_file_id BIGINT NOT NULL,
+    product_id    BIGINT,
+    order_id      BIGINT,
+    filename      VARCHAR(255) NOT NULL,
+    reason        VARCHAR(255) NOT NULL,
+    recorded_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT now()
+);
+
+WITH gone AS (
+    DELETE FROM stored_files a
+    USING stored_files b
+    WHERE a.product_id IS NOT NULL
+      AND a.product_id = b.product_id
+      AND a.filename = b.filename
+      AND a.id < b.id
+    RETURNING a.*
+)
+INSERT INTO orphaned_drive_files (drive_file_id, stored_file_id, product_id, order_id, filename, reason)
+SELECT drive_file_id, id, product_id, order_id, filename, 'V2 dedup'
+FROM gone;
+
+WITH gone AS (
+    DELETE FROM stored_files a
+    USING stored_files b
+    WHERE a.order_id IS NOT NULL
+      AND a.order_id = b.order_id
+      AND a.filename = b.filename
+      AND a.id < b.id
+    RETURNING a.*
+)
+INSERT INTO orphaned_drive_files (drive_file_id, stored_file_id, product_id, order_id, filename, reason)
+SELECT drive_file_id, id, product_id, order_id, filename, 'V2 dedup'
+FROM gone;
+
+-- Índices de db/indexes.sql, sustituidos por los únicos (también cubrientes)
+DROP INDEX IF EXISTS idx_stored_files_product_meta;
+DROP INDEX IF EXISTS idx_stored_files_order_meta;
+
+-- Son el objetivo del ON CONFLICT del upsert y, con INCLUDE, cubren las consultas
+-- de metadatos por dueño (StoredFileMeta) con un index-only scan
+CREATE UNIQUE INDEX IF NOT EXISTS uq_stored_files_product_filename
+    ON stored_files (product_id, filename)
+    INCLUDE (id, drive_file_id, original_name, file_type, size, uploader, order_id)
+    WHERE product_id IS NOT NULL;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_stored_files_order_filename
+    ON stored_files (order_id, filename)
+    INCLUDE (id, drive_file_id, original_name, file_type, size, uploader, product_id)
+    WHERE order_id IS NOT NULL;
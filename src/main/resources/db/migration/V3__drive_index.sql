@@ -0,0 +1,20 @@
+-- Índice local de los archivos de Drive (DriveFileIndex). Se construye una vez con files.list y
+-- después se mantiene con changes.list desde el page token guardado en drive_sync_state, así que
+-- tras un reinicio basta con cargarlo y pedir los cambios pendientes.
+
+CREATE TABLE IF NOT EXISTS drive_index (
+    id            VARCHAR(255) PRIMARY KEY,
+    name          VARCHAR(1024) NOT NULL,
+    mime_type     VARCHAR(255),
+    size          BIGINT,
+    parent_id     VARCHAR(255),
+    md5           VARCHAR(32),
+    modified_time TIMESTAMP(6) WITH TIME ZONE
+);
+CREATE INDEX IF NOT EXISTS idx_drive_index_parent ON drive_index (parent_id);
+
+CREATE TABLE IF NOT EXISTS drive_sync_state (
+    name       VARCHAR(64) PRIMARY KEY,
+    page_token VARCHAR(255) NOT NULL,
+    updated_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
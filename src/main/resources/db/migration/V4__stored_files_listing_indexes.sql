@@ -0,0 +1,29 @@
+-- Índices del listado paginado por clave (FileListingService): orden uploaded_at DESC, id DESC
+-- y continuación con (uploaded_at, id) < (cursor). Cada filtro lleva delante su columna para que
+-- la página sea un recorrido de índice de "size" filas, sin ordenar ni saltar filas; Postgres los
+-- recorre hacia atrás para el orden descendente.
+
+-- Por producto / por orden
+CREATE INDEX IF NOT EXISTS idx_stored_files_product_page
+    ON stored_files (product_id, uploaded_at, id)
+    WHERE product_id IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_stored_files_order_page
+    ON stored_files (order_id, uploaded_at, id)
+    WHERE order_id IS NOT NULL;
+
+-- Por tipo sin dueño concreto (list/product, list/receipt)
+CREATE INDEX IF NOT EXISTS idx_stored_files_products_recent
+    ON stored_files (uploaded_at, id)
+    WHERE product_id IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_stored_files_orders_recent
+    ON stored_files (uploaded_at, id)
+    WHERE order_id IS NOT NULL;
+
+-- Por uploader y, sin filtros, por fecha (también sirve al rango from/to)
+CREATE INDEX IF NOT EXISTS idx_stored_files_uploader_page
+    ON stored_files (uploader, uploaded_at, id);
+
+CREATE INDEX IF NOT EXISTS idx_stored_files_recent
+    ON stored_files (uploaded_at, id);
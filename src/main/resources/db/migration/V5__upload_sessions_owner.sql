@@ -0,0 +1,15 @@
+-- Las sesiones reanudables pasan a tener dueño (file-service.instance-id), igual que upload_jobs:
+-- la copia local está en el disco de una réplica y sólo ésa puede retomarla al arrancar. Sin dueño,
+-- cada réplica que arrancaba retomaba también las sesiones en curso de las demás y, al no encontrar
+-- su copia local, las marcaba FAILED.
+--
+-- Las sesiones anteriores no se pueden atribuir a ninguna instancia: quedan con dueño 'unknown' y
+-- ninguna réplica las retoma.
+
+ALTER TABLE upload_sessions ADD COLUMN IF NOT EXISTS owner VARCHAR(255);
+
+UPDATE upload_sessions SET owner = 'unknown' WHERE owner IS NULL;
+
+ALTER TABLE upload_sessions ALTER COLUMN owner SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_upload_sessions_owner_status ON upload_sessions (owner, status);
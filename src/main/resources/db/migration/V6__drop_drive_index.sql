@@ -0,0 +1,4 @@
+-- El índice local de Drive (V3) ya no tiene lectores: el listado sale de stored_files
+-- (FileListingService) y los ZIP de producto también, así que sólo quedaba la carga de mantenerlo.
+DROP TABLE IF EXISTS drive_index;
+DROP TABLE IF EXISTS drive_sync_state;
@@ -0,0 +1,37 @@
+package com.aec.FileSrv.controller;
+
+import com.aec.FileSrv.controller.FileResponseWriter.ByteRange;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileResponseWriterTest {
+
+    @Test
+    void mergesOverlappingAndAdjacentRangesInOrder() {
+        assertEquals(List.of(new ByteRange(0, 199), new ByteRange(500, 599)),
+                FileResponseWriter.resolveRanges("bytes=500-599,100-199,0-99,50-120", 1000));
+    }
+
+    @Test
+    void rejectsRangesThatAddUpToMoreThanTheFile() {
+        assertNull(FileResponseWriter.resolveRanges("bytes=0-,0-,0-", 1000));
+        assertNull(FileResponseWriter.resolveRanges("bytes=0-600,400-999", 1000));
+    }
+
+    @Test
+    void ignoresInvalidHeaderAndRejectsUnsatisfiable() {
+        assertEquals(List.of(), FileResponseWriter.resolveRanges("items=0-1", 1000));
+        assertNull(FileResponseWriter.resolveRanges("bytes=2000-", 1000));
+        assertEquals(List.of(new ByteRange(900, 999)), FileResponseWriter.resolveRanges("bytes=-100,2000-", 1000));
+    }
+
+    @Test
+    void dispositionEncodesNonAsciiFilenames() {
+        String disposition = FileResponseWriter.inlineDisposition("plano \"final\" ñ.pdf");
+        assertTrue(disposition.startsWith("inline; "));
+        assertTrue(disposition.contains("filename*=UTF-8''plano%20%22final%22%20%C3%B1.pdf"), disposition);
+    }
+}
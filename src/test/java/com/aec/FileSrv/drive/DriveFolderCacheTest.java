@@ -0,0 +1,87 @@
+package com.aec.FileSrv.drive;
+
+import com.aec.FileSrv.config.DriveProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DriveFolderCacheTest {
+
+    private DriveFolderCache cache(int maxEntries, Duration ttl) {
+        DriveProperties props = new DriveProperties();
+        props.setFolderCacheMaxEntries(maxEntries);
+        props.setFolderCacheTtl(ttl);
+        return new DriveFolderCache(props, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        DriveFolderCache cache = cache(100, Duration.ofMinutes(5));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> cache.get("48", "root", () -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "folder-48";
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> f : results) {
+                assertEquals("folder-48", f.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void failedLoadIsNotCached() throws Exception {
+        DriveFolderCache cache = cache(100, Duration.ofMinutes(5));
+        assertThrows(IOException.class, () -> cache.get("x", null, () -> {
+            throw new IOException("drive caído");
+        }));
+        assertEquals("ok", cache.get("x", null, () -> "ok"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondBudget() throws Exception {
+        DriveFolderCache cache = cache(2, Duration.ofMinutes(5));
+        cache.get("a", null, () -> "A");
+        cache.get("b", null, () -> "B");
+        cache.get("a", null, () -> "A2");
+        cache.get("c", null, () -> "C");
+        assertEquals(2, cache.size());
+        assertEquals("A", cache.get("a", null, () -> "A3"));
+        assertEquals("B2", cache.get("b", null, () -> "B2"));
+    }
+
+    @Test
+    void invalidateFolderIdForcesReload() throws Exception {
+        DriveFolderCache cache = cache(10, Duration.ofMinutes(5));
+        cache.get("p", "root", () -> "old");
+        cache.invalidateFolderId("old");
+        assertEquals("new", cache.get("p", "root", () -> "new"));
+    }
+}
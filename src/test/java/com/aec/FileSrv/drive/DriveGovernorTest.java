@@ -0,0 +1,100 @@
+package com.aec.FileSrv.drive;
+
+import com.aec.FileSrv.config.DriveProperties;
+import com.aec.FileSrv.drive.DriveMetrics.Kind;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DriveGovernorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private DriveGovernor governor() {
+        DriveProperties props = new DriveProperties();
+        props.setGovernorInitialLimit(16);
+        props.setGovernorInitialBackoff(Duration.ofMillis(1));
+        props.setGovernorMaxBackoff(Duration.ofMillis(2));
+        return new DriveGovernor(props, new DriveMetrics(registry), registry);
+    }
+
+    private static HttpResponseException status(int code) {
+        return new HttpResponseException.Builder(code, "status " + code, new HttpHeaders()).build();
+    }
+
+    private static GoogleJsonResponseException rateLimited() {
+        GoogleJsonError.ErrorInfo info = new GoogleJsonError.ErrorInfo();
+        info.setReason("userRateLimitExceeded");
+        GoogleJsonError details = new GoogleJsonError();
+        details.setCode(403);
+        details.setErrors(List.of(info));
+        return new GoogleJsonResponseException(
+                new HttpResponseException.Builder(403, "Forbidden", new HttpHeaders()), details);
+    }
+
+    @Test
+    void quotaRejectionIsRetriedEvenForCreateAndHalvesTheLimit() throws Exception {
+        DriveGovernor governor = governor();
+        AtomicInteger attempts = new AtomicInteger();
+
+        String id = governor.call("files.create", Kind.TRANSFER, () -> {
+            if (attempts.incrementAndGet() == 1) throw rateLimited();
+            return "file-1";
+        });
+
+        assertEquals("file-1", id);
+        assertEquals(2, attempts.get());
+        assertTrue(governor.currentLimit() < 9, "límite tras el 403: " + governor.currentLimit());
+        assertEquals(1, registry.get("drive.governor.throttled").tag("operation", "files.create").counter().count());
+    }
+
+    @Test
+    void serverErrorsAreRetriedOnlyForIdempotentOperations() throws Exception {
+        DriveGovernor governor = governor();
+        AtomicInteger creates = new AtomicInteger();
+        AtomicInteger lists = new AtomicInteger();
+
+        assertThrows(HttpResponseException.class, () -> governor.call("files.create", Kind.TRANSFER, () -> {
+            creates.incrementAndGet();
+            throw status(503);
+        }));
+        String page = governor.call("files.list", Kind.METADATA, () -> {
+            if (lists.incrementAndGet() < 3) throw status(503);
+            return "page";
+        });
+
+        assertEquals(1, creates.get());
+        assertEquals("page", page);
+        assertEquals(3, lists.get());
+        assertEquals(16, governor.currentLimit(), 0.5); // los 5xx no se toman como señal de cuota
+    }
+
+    @Test
+    void callOnceNeverRetries() {
+        DriveGovernor governor = governor();
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(HttpResponseException.class, () -> governor.callOnce("files.upload.chunk", Kind.TRANSFER, () -> {
+            attempts.incrementAndGet();
+            throw status(429);
+        }));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void retryAfterInSeconds() {
+        HttpResponseException e = new HttpResponseException.Builder(429, "Too Many Requests",
+                new HttpHeaders().set("Retry-After", "3")).build();
+        assertEquals(3000, DriveGovernor.retryAfterMillis(e));
+        assertEquals(0, DriveGovernor.retryAfterMillis(status(429)));
+    }
+}
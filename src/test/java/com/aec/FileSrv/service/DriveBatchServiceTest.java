@@ -0,0 +1,166 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.config.DriveProperties;
+import com.aec.FileSrv.drive.DriveGovernor;
+import com.aec.FileSrv.drive.DriveMetrics;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.drive.Drive;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Reintentos por elemento y fusión de resultados contra un endpoint batch falso local. */
+class DriveBatchServiceTest {
+
+    private static final Pattern CALL = Pattern.compile("(GET|DELETE) \\S*/drive/v3/files/([^?\\s]+)");
+    private static final String BOUNDARY = "batch_fake";
+
+    private HttpServer server;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    /** Ids de cada batch recibido, en orden */
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+    /** Estado a responder para cada id; se consume la cabeza de la lista en cada intento */
+    private final Map<String, List<Integer>> script = new ConcurrentHashMap<>();
+    private volatile int wholeBatchFailures;
+    private DriveBatchService batch;
+
+    @BeforeEach
+    void startFakeDrive() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/batch/drive/v3", this::handleBatch);
+        server.start();
+        Drive drive = new Drive.Builder(new NetHttpTransport(), GsonFactory.getDefaultInstance(), null)
+                .setRootUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/")
+                .setApplicationName("test")
+                .build();
+        DriveProperties props = new DriveProperties();
+        props.setGovernorRatePerSecond(10_000);
+        props.setGovernorInitialBackoff(Duration.ofMillis(1));
+        props.setGovernorMaxBackoff(Duration.ofMillis(2));
+        props.setGovernorMaxRetries(3);
+        DriveGovernor governor = new DriveGovernor(props, new DriveMetrics(registry), registry);
+        batch = new DriveBatchService(drive, governor, registry);
+    }
+
+    @AfterEach
+    void stopFakeDrive() {
+        server.stop(0);
+    }
+
+    private void handleBatch(HttpExchange ex) throws IOException {
+        String body = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        if (wholeBatchFailures > 0) {
+            wholeBatchFailures--;
+            ex.sendResponseHeaders(503, -1);
+            ex.close();
+            return;
+        }
+        List<String> ids = new ArrayList<>();
+        StringBuilder out = new StringBuilder();
+        Matcher m = CALL.matcher(body);
+        while (m.find()) {
+            String id = m.group(2);
+            ids.add(id);
+            List<Integer> statuses = script.getOrDefault(id, List.of());
+            int status = statuses.isEmpty() ? 200 : statuses.size() == 1 ? statuses.get(0) : statuses.remove(0);
+            out.append("--").append(BOUNDARY).append("\r\n")
+                    .append("Content-Type: application/http\r\n\r\n")
+                    .append(part(status, id, "GET".equals(m.group(1))));
+        }
+        out.append("--").append(BOUNDARY).append("--\r\n");
+        batches.add(ids);
+        byte[] bytes = out.toString().getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().add("Content-Type", "multipart/mixed; boundary=" + BOUNDARY);
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static String part(int status, String id, boolean get) {
+        String json;
+        if (status >= 300) {
+            String reason = status == 429 ? "rateLimitExceeded" : status == 404 ? "notFound" : "forbidden";
+            json = "{\"error\":{\"code\":" + status + ",\"message\":\"" + reason + "\","
+                    + "\"errors\":[{\"reason\":\"" + reason + "\"}]}}";
+        } else if (get) {
+            json = "{\"id\":\"" + id + "\",\"size\":\"10\",\"md5Checksum\":\"abc\"}";
+        } else {
+            return "HTTP/1.1 204 No Content\r\n\r\n\r\n";
+        }
+        return "HTTP/1.1 " + status + " X\r\nContent-Type: application/json\r\n"
+                + "Content-Length: " + json.length() + "\r\n\r\n" + json + "\r\n";
+    }
+
+    private void script(String id, Integer... statuses) {
+        script.put(id, new ArrayList<>(List.of(statuses)));
+    }
+
+    @Test
+    void onlyRetryableFailuresAreResentAndResultsAreMerged() throws Exception {
+        script("ok", 204);
+        script("throttled", 429, 204);
+        script("flaky", 503, 503, 204);
+        script("gone", 404);
+        script("denied", 403);
+
+        Map<String, DriveBatchService.ItemResult> results =
+                batch.delete(List.of("ok", "throttled", "flaky", "gone", "denied"));
+
+        assertEquals(List.of(List.of("ok", "throttled", "flaky", "gone", "denied"),
+                List.of("throttled", "flaky"), List.of("flaky")), batches);
+        assertTrue(results.get("ok").ok());
+        assertTrue(results.get("throttled").ok());
+        assertTrue(results.get("flaky").ok());
+        assertTrue(results.get("gone").notFound());
+        assertEquals(403, results.get("denied").code());
+        assertEquals("forbidden", results.get("denied").reason());
+    }
+
+    @Test
+    void giveUpAfterMaxRetriesKeepingTheLastFailure() throws Exception {
+        script("stuck", 503);
+
+        var result = batch.delete(List.of("stuck")).get("stuck");
+
+        assertEquals(4, batches.size()); // intento inicial + 3 reintentos
+        assertEquals(503, result.code());
+        assertFalse(result.ok());
+    }
+
+    @Test
+    void wholeBatchFailureRetriesEveryItemAndChunksAtTheDriveLimit() throws Exception {
+        wholeBatchFailures = 1;
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < DriveBatchService.MAX_BATCH + 5; i++) {
+            ids.add("f" + i);
+        }
+
+        Map<String, DriveBatchService.ItemResult> results = batch.metadata(ids);
+
+        // El primer trozo falla entero (503, sin partes) y se reenvía completo en la ronda siguiente
+        assertEquals(List.of(5, DriveBatchService.MAX_BATCH), batches.stream().map(List::size).toList());
+        assertEquals(ids.size(), results.size());
+        assertTrue(results.values().stream().allMatch(DriveBatchService.ItemResult::ok));
+        assertEquals(10L, results.get("f0").file().getSize());
+    }
+}
@@ -0,0 +1,168 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.config.FileServiceProperties;
+import com.aec.FileSrv.service.FileListingService.Cursor;
+import com.aec.FileSrv.service.FileListingService.Query;
+import com.aec.FileSrv.service.FileListingService.Type;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** El cursor por sí solo y {@code writePage} contra un Postgres embebido con las migraciones aplicadas. */
+class FileListingServiceTest {
+
+    private static final Instant T0 = Instant.parse("2024-05-01T10:00:00.123456Z");
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcTemplate jdbc;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private FileListingService listing;
+
+    @BeforeAll
+    static void startPostgres() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        Flyway.configure().dataSource(postgres.getPostgresDatabase()).locations("classpath:db/migration").load().migrate();
+        jdbc = new JdbcTemplate(postgres.getPostgresDatabase());
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void emptyTable() {
+        jdbc.execute("TRUNCATE stored_files RESTART IDENTITY");
+        FileServiceProperties props = new FileServiceProperties();
+        props.setGatewayBaseUrl("http://gateway");
+        listing = new FileListingService(jdbc, mapper, new DownloadUris(props));
+    }
+
+    private long insert(String name, Long productId, Long orderId, String uploader, Instant uploadedAt) {
+        return jdbc.queryForObject("INSERT INTO stored_files (drive_file_id, filename, original_name, file_type, size, "
+                        + "uploaded_at, uploader, product_id, order_id) VALUES (?, ?, ?, 'application/pdf', 10, ?, ?, ?, ?) "
+                        + "RETURNING id", Long.class,
+                "drive-" + name, name, name, Timestamp.from(uploadedAt), uploader, productId, orderId);
+    }
+
+    private JsonNode page(Query q) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        listing.writePage(q, out);
+        return mapper.readTree(out.toByteArray());
+    }
+
+    private static List<Long> ids(JsonNode page) {
+        List<Long> ids = new ArrayList<>();
+        page.get("items").forEach(item -> ids.add(item.get("id").asLong()));
+        return ids;
+    }
+
+    @Test
+    void cursorRoundTripKeepsMicroseconds() {
+        Cursor cursor = new Cursor(Instant.parse("2024-05-01T10:15:30.123456Z"), 42);
+        String token = cursor.encode();
+
+        assertEquals(cursor, Cursor.decode(token));
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), "cursor opaco y seguro en URL: " + token);
+    }
+
+    @Test
+    void foreignCursorsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Cursor.decode("no es base64!"));
+        assertThrows(IllegalArgumentException.class, () -> Cursor.decode("MjozOjQ")); // "2:3:4", otra versión
+        assertThrows(IllegalArgumentException.class, () -> Cursor.decode("MTp4OjE")); // "1:x:1"
+    }
+
+    @Test
+    void filtersCombineAndRowsComeNewestFirst() throws IOException {
+        long p1Ana = insert("a.pdf", 1L, null, "ana", T0.plusSeconds(10));
+        long p1AnaOld = insert("b.pdf", 1L, null, "ana", T0.minusSeconds(3600));
+        long p1Luis = insert("c.pdf", 1L, null, "luis", T0.plusSeconds(20));
+        long p2Ana = insert("d.pdf", 2L, null, "ana", T0.plusSeconds(30));
+        long o7Ana = insert("e.pdf", null, 7L, "ana", T0.plusSeconds(40));
+        long o8Luis = insert("f.pdf", null, 8L, "luis", T0.plusSeconds(50));
+
+        assertEquals(List.of(p1Ana), ids(page(new Query(Type.ALL, 1L, null, "ana",
+                T0, T0.plusSeconds(60), null, 10))));
+        assertEquals(List.of(p2Ana, p1Ana, p1AnaOld), ids(page(new Query(Type.PRODUCT, null, null, "ana",
+                null, null, null, 10))));
+        assertEquals(List.of(o8Luis, o7Ana), ids(page(new Query(Type.RECEIPT, null, null, null,
+                null, null, null, 10))));
+        assertEquals(List.of(o7Ana), ids(page(new Query(Type.ALL, null, 7L, null, null, null, null, 10))));
+        // "to" es exclusivo y "from" inclusivo
+        assertEquals(List.of(p1Luis, p1Ana), ids(page(new Query(Type.ALL, null, null, null,
+                T0.plusSeconds(10), T0.plusSeconds(30), null, 10))));
+        assertEquals(List.of(o8Luis, o7Ana, p2Ana, p1Luis, p1Ana, p1AnaOld), ids(page(new Query(Type.ALL, null, null, null,
+                null, null, null, 10))));
+
+        JsonNode item = page(new Query(Type.ALL, 2L, null, null, null, null, null, 10)).get("items").get(0);
+        assertEquals("drive-d.pdf", item.get("driveFileId").asText());
+        assertEquals(2, item.get("productId").asLong());
+        assertTrue(item.get("orderId").isNull());
+        assertEquals(T0.plusSeconds(30).toString(), item.get("uploadedAt").asText());
+        assertEquals("http://gateway/api/files/drive-d.pdf", item.get("downloadUri").asText());
+    }
+
+    @Test
+    void nextCursorOnlyWhenAnotherRowExists() throws IOException {
+        for (int i = 0; i < 6; i++) {
+            insert("f" + i + ".pdf", 1L, null, "ana", T0.plusSeconds(i));
+        }
+
+        JsonNode partial = page(new Query(Type.ALL, null, null, null, null, null, null, 5));
+        assertEquals(5, partial.get("items").size());
+        assertTrue(partial.get("nextCursor").isTextual());
+
+        // Exactamente "size" filas: la fila extra del LIMIT no existe y no hay página siguiente
+        JsonNode exact = page(new Query(Type.ALL, null, null, null, null, null, null, 6));
+        assertEquals(6, exact.get("items").size());
+        assertTrue(exact.get("nextCursor").isNull());
+
+        JsonNode empty = page(new Query(Type.ALL, 99L, null, null, null, null, null, 5));
+        assertEquals(0, empty.get("items").size());
+        assertTrue(empty.get("nextCursor").isNull());
+    }
+
+    @Test
+    void pagingThroughTiedTimestampsNeitherRepeatsNorSkipsRows() throws IOException {
+        List<Long> expected = new ArrayList<>();
+        insert("newer.pdf", 1L, null, "ana", T0.plusSeconds(1));
+        // 17 filas con el mismo uploaded_at: sólo el id las separa y el corte de página cae entre ellas
+        for (int i = 0; i < 17; i++) {
+            insert("tie" + i + ".pdf", 1L, null, "ana", T0);
+        }
+        insert("older.pdf", 1L, null, "ana", T0.minusNanos(1000));
+        jdbc.query("SELECT id FROM stored_files ORDER BY uploaded_at DESC, id DESC",
+                rs -> { expected.add(rs.getLong(1)); });
+
+        List<Long> seen = new ArrayList<>();
+        Cursor after = null;
+        int pages = 0;
+        do {
+            JsonNode page = page(new Query(Type.PRODUCT, 1L, null, null, null, null, after, 4));
+            seen.addAll(ids(page));
+            after = page.get("nextCursor").isNull() ? null : Cursor.decode(page.get("nextCursor").asText());
+            pages++;
+        } while (after != null && pages < 10);
+
+        assertEquals(expected, seen);
+        assertEquals(seen.size(), new HashSet<>(seen).size());
+        assertEquals(5, pages); // 19 filas de 4 en 4
+    }
+}
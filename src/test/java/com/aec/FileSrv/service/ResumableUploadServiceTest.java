@@ -0,0 +1,259 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.Repository.UploadSessionRepository;
+import com.aec.FileSrv.config.DriveProperties;
+import com.aec.FileSrv.config.FileServiceProperties;
+import com.aec.FileSrv.drive.DriveGovernor;
+import com.aec.FileSrv.drive.DriveMetrics;
+import com.aec.FileSrv.model.UploadSession;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.drive.Drive;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/** Ejercita el protocolo reanudable contra un Drive falso local. */
+class ResumableUploadServiceTest {
+
+    @TempDir
+    Path spoolDir;
+
+    private HttpServer server;
+    private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    private final AtomicInteger chunkPuts = new AtomicInteger();
+    private volatile boolean failSecondChunkOnce = true;
+    private volatile boolean rejectChunks;
+    private String baseUrl;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void startFakeDrive() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        server.createContext("/upload/drive/v3/files", ex -> {
+            ex.getRequestBody().readAllBytes();
+            ex.getResponseHeaders().add("Location", baseUrl + "session/1");
+            ex.sendResponseHeaders(200, -1);
+            ex.close();
+        });
+        server.createContext("/session/1", this::handleSessionPut);
+        server.start();
+    }
+
+    @AfterEach
+    void stopFakeDrive() {
+        server.stop(0);
+    }
+
+    private synchronized void handleSessionPut(HttpExchange ex) throws IOException {
+        String range = ex.getRequestHeaders().getFirst("Content-Range");
+        byte[] body = ex.getRequestBody().readAllBytes();
+        long total = Long.parseLong(range.substring(range.indexOf('/') + 1));
+        if (!range.startsWith("bytes */")) {
+            int n = chunkPuts.incrementAndGet();
+            if (rejectChunks) {
+                ex.sendResponseHeaders(403, -1);
+                ex.close();
+                return;
+            }
+            if (n == 2 && failSecondChunkOnce) {
+                failSecondChunkOnce = false;
+                ex.sendResponseHeaders(503, -1);
+                ex.close();
+                return;
+            }
+            received.write(body);
+        }
+        if (received.size() == total) {
+            byte[] json = "{\"id\":\"file-1\"}".getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().add("Content-Type", "application/json");
+            ex.sendResponseHeaders(200, json.length);
+            ex.getResponseBody().write(json);
+        } else {
+            if (received.size() > 0) {
+                ex.getResponseHeaders().add("Range", "bytes=0-" + (received.size() - 1));
+            }
+            ex.sendResponseHeaders(308, -1);
+        }
+        ex.close();
+    }
+
+    private DriveProperties props() {
+        DriveProperties props = new DriveProperties();
+        props.setResumableThreshold(DataSize.ofBytes(0));
+        props.setResumableChunkSize(DataSize.ofKilobytes(256));
+        props.setResumableMaxRetries(3);
+        props.setResumableInitialBackoff(Duration.ofMillis(1));
+        props.setUploadSessionDir(spoolDir.toString());
+        return props;
+    }
+
+    private DriveMetrics metrics() {
+        return new DriveMetrics(registry);
+    }
+
+    private DriveGovernor governor(DriveProperties props) {
+        return new DriveGovernor(props, metrics(), registry);
+    }
+
+    private Drive drive() {
+        return new Drive.Builder(new NetHttpTransport(), GsonFactory.getDefaultInstance(), null)
+                .setRootUrl(baseUrl)
+                .setApplicationName("test")
+                .build();
+    }
+
+    private ResumableUploadService service(Drive drive, DriveProperties props, UploadSessionRepository sessions) {
+        FileServiceProperties serviceProps = new FileServiceProperties();
+        serviceProps.setInstanceId("pod-a");
+        return new ResumableUploadService(drive, props, sessions, metrics(), governor(props), serviceProps);
+    }
+
+    @Test
+    void uploadsInChunksAndRetriesFailedChunk() throws Exception {
+        DriveProperties props = props();
+        Drive drive = drive();
+        UploadSessionRepository sessions = mock(UploadSessionRepository.class);
+        when(sessions.save(any(UploadSession.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        byte[] content = new byte[700 * 1024];
+        new Random(42).nextBytes(content);
+        MockMultipartFile file = new MockMultipartFile("file", "plano.rvt", "application/octet-stream", content);
+
+        ResumableUploadService service = service(drive, props, sessions);
+        String id = service.upload(file, "folder-1", null, "plano.rvt", "application/octet-stream", 48L, null, "ana");
+
+        assertEquals("file-1", id);
+        assertTrue(Arrays.equals(content, received.toByteArray()));
+        assertEquals(4, chunkPuts.get()); // 3 chunks + 1 reintento
+        assertEquals(1, registry.get("drive.api.retries").tag("operation", "files.upload.chunk").counter().count());
+        verify(sessions).delete(any(UploadSession.class));
+        try (var left = Files.list(spoolDir)) {
+            assertEquals(0, left.count());
+        }
+    }
+
+    @Test
+    void streamsBodyWithoutSpoolOrPersistedSession() throws Exception {
+        UploadSessionRepository sessions = mock(UploadSessionRepository.class);
+        DriveProperties props = props();
+        byte[] content = new byte[600 * 1024];
+        new Random(7).nextBytes(content);
+
+        ResumableUploadService service = service(drive(), props, sessions);
+        String id = service.uploadStream(new ByteArrayInputStream(content), content.length,
+                "folder-1", null, "video.mp4", "video/mp4");
+
+        assertEquals("file-1", id);
+        assertTrue(Arrays.equals(content, received.toByteArray()));
+        assertEquals(4, chunkPuts.get()); // el chunk fallido se reenvía desde memoria
+        verifyNoInteractions(sessions);
+        try (var left = Files.list(spoolDir)) {
+            assertEquals(0, left.count());
+        }
+    }
+
+    @Test
+    void terminalFailureMarksSessionFailedAndDropsSpool() throws Exception {
+        rejectChunks = true;
+        UploadSessionRepository sessions = mock(UploadSessionRepository.class);
+        when(sessions.save(any(UploadSession.class))).thenAnswer(inv -> inv.getArgument(0));
+        DriveProperties props = props();
+        MockMultipartFile file = new MockMultipartFile("file", "plano.rvt", "application/octet-stream", new byte[1024]);
+
+        ResumableUploadService service = service(drive(), props, sessions);
+        assertThrows(IOException.class, () ->
+                service.upload(file, "folder-1", null, "plano.rvt", "application/octet-stream", 48L, null, "ana"));
+
+        ArgumentCaptor<UploadSession> saved = ArgumentCaptor.forClass(UploadSession.class);
+        verify(sessions, atLeastOnce()).save(saved.capture());
+        UploadSession session = saved.getValue();
+        assertEquals(UploadSession.Status.FAILED, session.getStatus());
+        assertEquals("pod-a", session.getOwner());
+        assertEquals(1, chunkPuts.get()); // un 403 no se reintenta
+        verify(sessions, never()).delete(any(UploadSession.class));
+        try (var left = Files.list(spoolDir)) {
+            assertEquals(0, left.count());
+        }
+    }
+
+    @Test
+    void onlyResumesSessionsOwnedByThisInstance() {
+        UploadSessionRepository sessions = mock(UploadSessionRepository.class);
+        DriveProperties props = props();
+
+        service(drive(), props, sessions).pendingSessions();
+
+        verify(sessions).findByOwnerAndStatus("pod-a", UploadSession.Status.UPLOADING);
+    }
+
+    @Test
+    void takesOverStalledSessionsOfOtherInstances() {
+        UploadSessionRepository sessions = mock(UploadSessionRepository.class);
+        DriveProperties props = props();
+        props.setUploadSessionLease(Duration.ofMinutes(15));
+        Instant stalledAt = Instant.now().minus(Duration.ofHours(1));
+        UploadSession gone = UploadSession.builder().id(1L).owner("pod-old").updatedAt(stalledAt).build();
+        UploadSession raced = UploadSession.builder().id(2L).owner("pod-old").updatedAt(stalledAt).build();
+        when(sessions.findByStatusAndOwnerNotAndUpdatedAtBefore(eq(UploadSession.Status.UPLOADING), eq("pod-a"), any()))
+                .thenReturn(List.of(gone, raced));
+        when(sessions.takeOver(eq(1L), eq("pod-old"), eq("pod-a"), any(), any())).thenReturn(1);
+        when(sessions.takeOver(eq(2L), eq("pod-old"), eq("pod-a"), any(), any())).thenReturn(0);
+        UploadSession taken = UploadSession.builder().id(1L).owner("pod-a").updatedAt(Instant.now()).build();
+        when(sessions.findById(1L)).thenReturn(Optional.of(taken));
+
+        List<UploadSession> result = service(drive(), props, sessions).takeOverExpiredSessions();
+
+        assertEquals(List.of(taken), result); // la 2 la tomó otra instancia
+        ArgumentCaptor<Instant> expired = ArgumentCaptor.forClass(Instant.class);
+        verify(sessions).findByStatusAndOwnerNotAndUpdatedAtBefore(eq(UploadSession.Status.UPLOADING), eq("pod-a"),
+                expired.capture());
+        assertTrue(expired.getValue().isBefore(Instant.now().minus(Duration.ofMinutes(14))));
+        verify(sessions, never()).findById(2L);
+    }
+
+    @Test
+    void takenOverSessionWithoutLocalSpoolFails() {
+        UploadSessionRepository sessions = mock(UploadSessionRepository.class);
+        UploadSession session = UploadSession.builder()
+                .id(1L)
+                .owner("pod-a")
+                .spoolPath(spoolDir.resolve("en-otro-disco.part").toString())
+                .status(UploadSession.Status.UPLOADING)
+                .build();
+
+        assertThrows(IOException.class, () -> service(drive(), props(), sessions).resume(session));
+
+        assertEquals(UploadSession.Status.FAILED, session.getStatus());
+        verify(sessions).save(session);
+        assertEquals(0, chunkPuts.get());
+    }
+}
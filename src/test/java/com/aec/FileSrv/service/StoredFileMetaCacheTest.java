@@ -0,0 +1,85 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.Repository.StoredFileRepository;
+import com.aec.FileSrv.config.FileServiceProperties;
+import com.aec.FileSrv.model.StoredFile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StoredFileMetaCacheTest {
+
+    private final StoredFileRepository repo = mock(StoredFileRepository.class);
+
+    private StoredFileMetaCache cache(int maxEntries) {
+        FileServiceProperties props = new FileServiceProperties();
+        props.setMetaCacheMaxEntries(maxEntries);
+        return new StoredFileMetaCache(repo, props, new SimpleMeterRegistry());
+    }
+
+    private static StoredFile row(String driveId) {
+        StoredFile sf = new StoredFile();
+        sf.setDriveFileId(driveId);
+        return sf;
+    }
+
+    @Test
+    void repeatedLookupsHitTheDatabaseOnce() {
+        when(repo.findByDriveFileId("a")).thenReturn(Optional.of(row("a")));
+        StoredFileMetaCache cache = cache(10);
+
+        assertTrue(cache.find("a").isPresent());
+        assertTrue(cache.find("a").isPresent());
+        verify(repo, times(1)).findByDriveFileId("a");
+    }
+
+    @Test
+    void unknownIdsAreCachedUntilInvalidated() {
+        when(repo.findByDriveFileId("b")).thenReturn(Optional.empty());
+        StoredFileMetaCache cache = cache(10);
+
+        assertTrue(cache.find("b").isEmpty());
+        assertTrue(cache.find("b").isEmpty());
+        verify(repo, times(1)).findByDriveFileId("b");
+
+        when(repo.findByDriveFileId("b")).thenReturn(Optional.of(row("b")));
+        cache.invalidate("b");
+        assertTrue(cache.find("b").isPresent());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        when(repo.findByDriveFileId(anyString())).thenAnswer(inv -> Optional.of(row(inv.getArgument(0))));
+        StoredFileMetaCache cache = cache(2);
+
+        cache.find("a");
+        cache.find("b");
+        cache.find("a");
+        cache.find("c");
+        assertEquals(2, cache.size());
+
+        cache.find("a");
+        cache.find("b");
+        verify(repo, times(1)).findByDriveFileId("a");
+        verify(repo, times(2)).findByDriveFileId("b");
+    }
+
+    @Test
+    void readThatRacesAnInvalidationIsNotCached() {
+        StoredFileMetaCache cache = cache(10);
+        // Mientras se consulta la BD otra petición reemplaza la fila e invalida la entrada
+        when(repo.findByDriveFileId("a")).thenAnswer(inv -> {
+            cache.invalidate("a");
+            return Optional.of(row("a"));
+        });
+
+        assertTrue(cache.find("a").isPresent());
+        assertEquals(0, cache.size());
+        assertTrue(cache.find("a").isPresent());
+        verify(repo, times(2)).findByDriveFileId("a");
+    }
+}
@@ -0,0 +1,128 @@
+package com.aec.FileSrv.service;
+
+import com.aec.FileSrv.Repository.StoredFileRepository;
+import com.aec.FileSrv.Repository.UploadJobRepository;
+import com.aec.FileSrv.config.FileServiceProperties;
+import com.aec.FileSrv.model.UploadJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/** Arriendo de los trabajos pendientes: los de una instancia que dejó de renovarlo pasan a otra. */
+class UploadJobServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final UploadJobRepository jobs = mock(UploadJobRepository.class);
+    private final UploadJobNotifier notifier = mock(UploadJobNotifier.class);
+    private UploadJobService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileServiceProperties props = new FileServiceProperties();
+        props.setUploadJobDir(dir.toString());
+        props.setInstanceId("pod-b");
+        props.setUploadJobLease(Duration.ofMinutes(5));
+        service = new UploadJobService(jobs, mock(StoredFileRepository.class), mock(FileStorageService.class),
+                notifier, props, new MockEnvironment());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private UploadJob job(String id, UploadJob.Status status, Path spool) {
+        Instant old = Instant.now().minus(Duration.ofHours(1));
+        return UploadJob.builder()
+                .id(id)
+                .status(status)
+                .owner("pod-a")
+                .spoolPath(spool.toString())
+                .filename("plano.pdf")
+                .mimeType("application/pdf")
+                .size(3L)
+                .productId(7L)
+                .attempts(1)
+                .createdAt(old)
+                .updatedAt(old)
+                .build();
+    }
+
+    @Test
+    void sweepRenewsTheLeaseOfItsOwnPendingJobs() {
+        service.sweep();
+
+        verify(jobs).renew(eq("pod-b"), argThat(s -> s.contains(UploadJob.Status.QUEUED)
+                && s.contains(UploadJob.Status.RUNNING) && s.size() == 2), any());
+    }
+
+    @Test
+    void expiredJobWithItsSpoolIsTakenOverAndRequeued() throws IOException {
+        Path spool = Files.write(dir.resolve("j1.part"), new byte[]{1, 2, 3});
+        UploadJob stale = job("j1", UploadJob.Status.RUNNING, spool);
+        when(jobs.findByStatusInAndOwnerNotAndUpdatedAtBefore(any(), eq("pod-b"), any())).thenReturn(List.of(stale));
+        when(jobs.takeOver(eq("j1"), eq("pod-a"), eq("pod-b"), any(), any())).thenReturn(1);
+        UploadJob taken = job("j1", UploadJob.Status.QUEUED, spool);
+        taken.setOwner("pod-b");
+        when(jobs.findById("j1")).thenReturn(Optional.of(taken));
+        when(jobs.findByOwnerAndStatusOrderByCreatedAtAsc("pod-b", UploadJob.Status.QUEUED)).thenReturn(List.of(taken));
+
+        service.sweep();
+
+        // Caducado hace más que el arriendo: el corte pasado a takeOver es posterior a su updatedAt
+        ArgumentCaptor<Instant> expired = ArgumentCaptor.forClass(Instant.class);
+        verify(jobs).takeOver(eq("j1"), eq("pod-a"), eq("pod-b"), expired.capture(), any());
+        assertTrue(expired.getValue().isAfter(stale.getUpdatedAt()));
+        verify(jobs, timeout(2000)).claim(eq("j1"), any());
+        verify(jobs, never()).save(any());
+        assertEquals(UploadJob.Status.QUEUED, taken.getStatus());
+    }
+
+    @Test
+    void expiredJobWithoutItsSpoolFails() {
+        UploadJob stale = job("j2", UploadJob.Status.QUEUED, dir.resolve("otro-pod.part"));
+        when(jobs.findByStatusInAndOwnerNotAndUpdatedAtBefore(any(), eq("pod-b"), any())).thenReturn(List.of(stale));
+        when(jobs.takeOver(eq("j2"), eq("pod-a"), eq("pod-b"), any(), any())).thenReturn(1);
+        UploadJob taken = job("j2", UploadJob.Status.QUEUED, dir.resolve("otro-pod.part"));
+        when(jobs.findById("j2")).thenReturn(Optional.of(taken));
+
+        service.sweep();
+
+        verify(jobs).save(taken);
+        assertEquals(UploadJob.Status.FAILED, taken.getStatus());
+        assertTrue(taken.getError().contains("no está disponible"));
+        verify(notifier).publish(argThat(dto -> "FAILED".equals(dto.getStatus())), eq(true));
+        verify(jobs, never()).claim(any(), any());
+    }
+
+    @Test
+    void jobAlreadyTakenByAnotherInstanceIsLeftAlone() throws IOException {
+        Path spool = Files.write(dir.resolve("j3.part"), new byte[]{1});
+        UploadJob stale = job("j3", UploadJob.Status.QUEUED, spool);
+        when(jobs.findByStatusInAndOwnerNotAndUpdatedAtBefore(any(), eq("pod-b"), any())).thenReturn(List.of(stale));
+        when(jobs.takeOver(any(), any(), any(), any(), any())).thenReturn(0);
+
+        service.sweep();
+
+        verify(jobs, never()).findById(any());
+        verify(jobs, never()).save(any());
+        verifyNoInteractions(notifier);
+    }
+}